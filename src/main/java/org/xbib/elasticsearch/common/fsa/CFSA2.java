@@ -0,0 +1,309 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A compact FSA with variable-length arc representation, in the spirit of the
+ * CFSA2 format of the morfologik project. Each arc starts with a flags byte
+ * whose lower bits carry an index into a table of the most frequent labels.
+ * Target addresses are stored as variable-length integers and are omitted
+ * altogether if the target node immediately follows the last arc of the current
+ * node. If the automaton carries {@link FSAFlags#NUMBERS}, each node starts with
+ * the variable-length count of its right language.
+ *
+ * Instances are created by {@link CFSA2Serializer} from any other {@link FSA},
+ * usually the {@link ConstantArcSizeFSA} returned by {@link FSABuilder}.
+ *
+ * @see CFSA2Serializer
+ */
+public final class CFSA2 extends FSA {
+
+    /**
+     * Magic bytes of the serialized form.
+     */
+    static final int MAGIC = ('\\' << 24) | ('f' << 16) | ('s' << 8) | 'a';
+
+    /**
+     * Version of the serialized form.
+     */
+    static final byte VERSION = (byte) 0xc6;
+
+    /**
+     * The target node of this arc follows the last arc of the current node.
+     */
+    static final int BIT_TARGET_NEXT = 1 << 7;
+
+    /**
+     * The arc is the last one in the node's list of arcs.
+     */
+    static final int BIT_LAST_ARC = 1 << 6;
+
+    /**
+     * The arc is final.
+     */
+    static final int BIT_FINAL_ARC = 1 << 5;
+
+    /**
+     * Number of bits of the flags byte used for the label index.
+     */
+    static final int LABEL_INDEX_BITS = 5;
+
+    /**
+     * Mask of the label index bits.
+     */
+    static final int LABEL_INDEX_MASK = (1 << LABEL_INDEX_BITS) - 1;
+
+    /**
+     * Maximum number of labels in the label table, index zero is reserved for
+     * explicitly stored labels.
+     */
+    static final int LABEL_INDEX_SIZE = (1 << LABEL_INDEX_BITS) - 1;
+
+    /**
+     * FSA data, serialized as a byte array.
+     */
+    private final byte[] arcs;
+
+    /**
+     * Frequent labels, indexed by the label bits of an arc's flags.
+     */
+    private final byte[] labelMapping;
+
+    /**
+     * Flags of this automaton.
+     */
+    private final Set<FSAFlags> flags;
+
+    /**
+     * Whether nodes are prefixed with right language counts.
+     */
+    private final boolean hasNumbers;
+
+    /**
+     * @param arcs         FSA data
+     * @param labelMapping frequent label table, element zero is unused
+     * @param hasNumbers   whether nodes carry right language counts
+     */
+    CFSA2(byte[] arcs, byte[] labelMapping, boolean hasNumbers) {
+        this.arcs = arcs;
+        this.labelMapping = labelMapping;
+        this.hasNumbers = hasNumbers;
+        EnumSet<FSAFlags> set = EnumSet.of(FSAFlags.FLEXIBLE, FSAFlags.STOPBIT, FSAFlags.NEXTBIT);
+        if (hasNumbers) {
+            set.add(FSAFlags.NUMBERS);
+        }
+        this.flags = Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Read an automaton written by {@link #write(OutputStream)}.
+     *
+     * @param in input stream
+     * @return the automaton
+     * @throws IOException if the stream is not a compact automaton
+     */
+    public static CFSA2 read(InputStream in) throws IOException {
+        DataInputStream dataInput = new DataInputStream(in);
+        if (dataInput.readInt() != MAGIC) {
+            throw new IOException("invalid automaton header");
+        }
+        byte version = dataInput.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported automaton version: " + version);
+        }
+        int flags = dataInput.readShort();
+        byte[] labelMapping = new byte[dataInput.readUnsignedByte()];
+        dataInput.readFully(labelMapping);
+        byte[] arcs = new byte[dataInput.readInt()];
+        dataInput.readFully(arcs);
+        return new CFSA2(arcs, labelMapping, FSAFlags.isSet(flags, FSAFlags.NUMBERS));
+    }
+
+    /**
+     * Write this automaton to a stream.
+     *
+     * @param out output stream
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(out);
+        dataOutput.writeInt(MAGIC);
+        dataOutput.writeByte(VERSION);
+        dataOutput.writeShort(FSAFlags.asShort(flags));
+        dataOutput.writeByte(labelMapping.length);
+        dataOutput.write(labelMapping);
+        dataOutput.writeInt(arcs.length);
+        dataOutput.write(arcs);
+        dataOutput.flush();
+    }
+
+    /**
+     * @return the size of the serialized arcs in bytes
+     */
+    public int getSize() {
+        return arcs.length;
+    }
+
+    @Override
+    public int getRootNode() {
+        return getDestinationNodeOffset(getFirstArc(0));
+    }
+
+    @Override
+    public int getFirstArc(int node) {
+        return hasNumbers ? skipVInt(node) : node;
+    }
+
+    @Override
+    public int getNextArc(int arc) {
+        return isArcLast(arc) ? 0 : skipArc(arc);
+    }
+
+    @Override
+    public int getArc(int node, byte label) {
+        for (int arc = getFirstArc(node); arc != 0; arc = getNextArc(arc)) {
+            if (getArcLabel(arc) == label) {
+                return arc;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public byte getArcLabel(int arc) {
+        int index = arcs[arc] & LABEL_INDEX_MASK;
+        return index > 0 ? labelMapping[index] : arcs[arc + 1];
+    }
+
+    @Override
+    public boolean isArcFinal(int arc) {
+        return (arcs[arc] & BIT_FINAL_ARC) != 0;
+    }
+
+    @Override
+    public boolean isArcTerminal(int arc) {
+        return getDestinationNodeOffset(arc) == 0;
+    }
+
+    @Override
+    public int getEndNode(int arc) {
+        return getDestinationNodeOffset(arc);
+    }
+
+    @Override
+    public int getRightLanguageCount(int node) {
+        if (!hasNumbers) {
+            return super.getRightLanguageCount(node);
+        }
+        return readVInt(arcs, node);
+    }
+
+    @Override
+    public Set<FSAFlags> getFlags() {
+        return flags;
+    }
+
+    private boolean isArcLast(int arc) {
+        return (arcs[arc] & BIT_LAST_ARC) != 0;
+    }
+
+    private boolean isNextSet(int arc) {
+        return (arcs[arc] & BIT_TARGET_NEXT) != 0;
+    }
+
+    /**
+     * Returns the address of the node pointed to by this arc.
+     */
+    private int getDestinationNodeOffset(int a) {
+        int arc = a;
+        if (isNextSet(arc)) {
+            // follow to the last arc of this node, the target node starts right after it
+            while (!isArcLast(arc)) {
+                arc = getNextArc(arc);
+            }
+            return skipArc(arc);
+        }
+        return readVInt(arcs, arc + ((arcs[arc] & LABEL_INDEX_MASK) == 0 ? 2 : 1));
+    }
+
+    /**
+     * Returns the offset right after the given arc.
+     */
+    private int skipArc(int a) {
+        int offset = a;
+        int flag = arcs[offset++];
+        if ((flag & LABEL_INDEX_MASK) == 0) {
+            offset++;
+        }
+        if ((flag & BIT_TARGET_NEXT) == 0) {
+            offset = skipVInt(offset);
+        }
+        return offset;
+    }
+
+    private int skipVInt(int o) {
+        int offset = o;
+        while (arcs[offset++] < 0) {
+            // skip continuation bytes
+        }
+        return offset;
+    }
+
+    /**
+     * Read a variable-length integer at the given offset.
+     *
+     * @param array  array
+     * @param o offset
+     * @return the value
+     */
+    static int readVInt(byte[] array, int o) {
+        int offset = o;
+        byte b = array[offset];
+        int value = b & 0x7f;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = array[++offset];
+            value |= (b & 0x7f) << shift;
+        }
+        return value;
+    }
+
+    /**
+     * Write a variable-length integer at the given offset.
+     *
+     * @param array  array
+     * @param o offset
+     * @param v value, must not be negative
+     * @return the offset after the written value
+     */
+    static int writeVInt(byte[] array, int o, int v) {
+        int offset = o;
+        int value = v;
+        while (value > 0x7f) {
+            array[offset++] = (byte) (0x80 | (value & 0x7f));
+            value >>= 7;
+        }
+        array[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * @param v value, must not be negative
+     * @return the number of bytes needed to write the value as a variable-length integer
+     */
+    static int vIntLength(int v) {
+        int value = v;
+        int len = 1;
+        while (value > 0x7f) {
+            value >>= 7;
+            len++;
+        }
+        return len;
+    }
+}
@@ -0,0 +1,229 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.xbib.elasticsearch.common.fsa.CFSA2.BIT_FINAL_ARC;
+import static org.xbib.elasticsearch.common.fsa.CFSA2.BIT_LAST_ARC;
+import static org.xbib.elasticsearch.common.fsa.CFSA2.BIT_TARGET_NEXT;
+import static org.xbib.elasticsearch.common.fsa.CFSA2.LABEL_INDEX_SIZE;
+
+/**
+ * Converts an {@link FSA}, usually the {@link ConstantArcSizeFSA} returned by
+ * {@link FSABuilder}, into the compact {@link CFSA2} encoding.
+ *
+ * States are linearized in depth-first order, visiting the target of each state's
+ * last arc first, so that as many arcs as possible can use the implicit
+ * {@link CFSA2#BIT_TARGET_NEXT} target. The most frequent labels are moved to a
+ * label table and referenced from the arc flags. Since target addresses are
+ * variable-length integers, the layout is computed repeatedly until the
+ * addresses are stable.
+ */
+public final class CFSA2Serializer {
+
+    /**
+     * Whether to store right language counts in nodes.
+     */
+    private boolean withNumbers;
+
+    /**
+     * Serialize right language counts with each node, so that the resulting
+     * automaton supports {@link FSAFlags#NUMBERS} and perfect hashing.
+     *
+     * @return this serializer
+     */
+    public CFSA2Serializer withNumbers() {
+        this.withNumbers = true;
+        return this;
+    }
+
+    /**
+     * Convert the given automaton.
+     *
+     * @param fsa automaton
+     * @return compact automaton
+     */
+    public CFSA2 serialize(FSA fsa) {
+        final int[] states = linearize(fsa);
+        int maxState = 0;
+        for (int state : states) {
+            maxState = Math.max(maxState, state);
+        }
+        final int[] counts = withNumbers ? computeRightLanguageCounts(fsa, states, maxState) : null;
+        final byte[] labelMapping = computeLabelMapping(fsa, states);
+        final int[] labelIndex = new int[256];
+        for (int i = 1; i < labelMapping.length; i++) {
+            labelIndex[labelMapping[i] & 0xff] = i;
+        }
+        final int[] offsets = new int[maxState + 1];
+        int size;
+        do {
+            size = emit(fsa, null, states, offsets, counts, labelIndex);
+        } while (size < 0);
+        byte[] arcs = new byte[size];
+        emit(fsa, arcs, states, offsets, counts, labelIndex);
+        return new CFSA2(arcs, labelMapping, withNumbers);
+    }
+
+    /**
+     * Lay out (and, if <code>out</code> is given, write) all states.
+     *
+     * @return the number of bytes of the layout, or a negative value if any
+     * state offset changed and another layout pass is required
+     */
+    private static int emit(FSA fsa, byte[] out, int[] states, int[] offsets, int[] counts, int[] labelIndex) {
+        boolean changed = false;
+        int offset = 0;
+        // epsilon state, with a single arc to the root
+        final int root = fsa.getRootNode();
+        if (counts != null) {
+            offset = emitVInt(out, offset, 0);
+        }
+        offset = emitArc(out, offset, BIT_LAST_ARC, (byte) '^', labelIndex, root == 0 ? 0 : offsets[root]);
+        for (int j = 0; j < states.length; j++) {
+            final int state = states[j];
+            if (offsets[state] != offset) {
+                offsets[state] = offset;
+                changed = true;
+            }
+            if (counts != null) {
+                offset = emitVInt(out, offset, counts[state]);
+            }
+            for (int arc = fsa.getFirstArc(state); arc != 0; arc = fsa.getNextArc(arc)) {
+                final boolean terminal = fsa.isArcTerminal(arc);
+                final int target = terminal ? 0 : fsa.getEndNode(arc);
+                int flags = fsa.isArcFinal(arc) ? BIT_FINAL_ARC : 0;
+                if (fsa.getNextArc(arc) == 0) {
+                    flags |= BIT_LAST_ARC;
+                    if (!terminal && j + 1 < states.length && states[j + 1] == target) {
+                        flags |= BIT_TARGET_NEXT;
+                    }
+                }
+                offset = emitArc(out, offset, flags, fsa.getArcLabel(arc), labelIndex,
+                        terminal ? 0 : offsets[target]);
+            }
+        }
+        return changed ? -1 : offset;
+    }
+
+    private static int emitArc(byte[] out, int o, int flags, byte label, int[] labelIndex, int target) {
+        int offset = o;
+        final int index = labelIndex[label & 0xff];
+        if (out != null) {
+            out[offset] = (byte) (flags | index);
+        }
+        offset++;
+        if (index == 0) {
+            if (out != null) {
+                out[offset] = label;
+            }
+            offset++;
+        }
+        if ((flags & BIT_TARGET_NEXT) == 0) {
+            offset = emitVInt(out, offset, target);
+        }
+        return offset;
+    }
+
+    private static int emitVInt(byte[] out, int offset, int value) {
+        return out != null ? CFSA2.writeVInt(out, offset, value) : offset + CFSA2.vIntLength(value);
+    }
+
+    /**
+     * Linearize all states in depth-first order. The target of the last arc is
+     * visited first, so that it directly follows its source state.
+     */
+    private static int[] linearize(FSA fsa) {
+        int[] states = new int[16];
+        int count = 0;
+        final int root = fsa.getRootNode();
+        if (root == 0) {
+            return new int[0];
+        }
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = root;
+        final BitSet visited = new BitSet();
+        while (top > 0) {
+            final int state = stack[--top];
+            if (visited.get(state)) {
+                continue;
+            }
+            visited.set(state);
+            if (count == states.length) {
+                states = Arrays.copyOf(states, count * 2);
+            }
+            states[count++] = state;
+            for (int arc = fsa.getFirstArc(state); arc != 0; arc = fsa.getNextArc(arc)) {
+                if (!fsa.isArcTerminal(arc)) {
+                    final int target = fsa.getEndNode(arc);
+                    if (!visited.get(target)) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = target;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(states, count);
+    }
+
+    /**
+     * Compute the number of sequences reachable from each state.
+     */
+    private static int[] computeRightLanguageCounts(FSA fsa, int[] states, int maxState) {
+        final int[] counts = new int[maxState + 1];
+        final BitSet done = new BitSet();
+        // reverse depth-first order is not a post order in general, so resolve lazily
+        for (int i = states.length - 1; i >= 0; i--) {
+            computeRightLanguageCount(fsa, states[i], counts, done);
+        }
+        return counts;
+    }
+
+    private static int computeRightLanguageCount(FSA fsa, int state, int[] counts, BitSet done) {
+        if (done.get(state)) {
+            return counts[state];
+        }
+        int count = 0;
+        for (int arc = fsa.getFirstArc(state); arc != 0; arc = fsa.getNextArc(arc)) {
+            if (fsa.isArcFinal(arc)) {
+                count++;
+            }
+            if (!fsa.isArcTerminal(arc)) {
+                count += computeRightLanguageCount(fsa, fsa.getEndNode(arc), counts, done);
+            }
+        }
+        counts[state] = count;
+        done.set(state);
+        return count;
+    }
+
+    /**
+     * Build a table of the most frequent arc labels. Element zero is unused.
+     */
+    private static byte[] computeLabelMapping(FSA fsa, int[] states) {
+        final long[] frequencies = new long[256];
+        for (int state : states) {
+            for (int arc = fsa.getFirstArc(state); arc != 0; arc = fsa.getNextArc(arc)) {
+                frequencies[fsa.getArcLabel(arc) & 0xff]++;
+            }
+        }
+        // sort by descending frequency, keep the label in the lower bits
+        final long[] sorted = new long[256];
+        int n = 0;
+        for (int label = 0; label < 256; label++) {
+            if (frequencies[label] > 0) {
+                sorted[n++] = (frequencies[label] << 8) | label;
+            }
+        }
+        Arrays.sort(sorted, 0, n);
+        final int size = Math.min(n, LABEL_INDEX_SIZE);
+        final byte[] labelMapping = new byte[size + 1];
+        for (int i = 0; i < size; i++) {
+            labelMapping[i + 1] = (byte) sorted[n - 1 - i];
+        }
+        return labelMapping;
+    }
+}
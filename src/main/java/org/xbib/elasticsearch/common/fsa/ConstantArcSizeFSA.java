@@ -1,11 +1,20 @@
 package org.xbib.elasticsearch.common.fsa;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
  * An FSA with constant-size arc representation produced directly by {@link FSABuilder}.
  *
+ * The arcs of a node are laid out in ascending label order. An optional arc index
+ * (see {@link #withArcIndex(int)}) records the number of arcs of each node in the
+ * otherwise unused bits of the first arc's flags, so that {@link #getArc(int, byte)}
+ * can use binary search, and keeps direct-indexed label tables for nodes
+ * with a high fan-out.
+ *
  * @see FSABuilder
  */
 public final class ConstantArcSizeFSA extends FSA {
@@ -56,6 +65,18 @@ public final class ConstantArcSizeFSA extends FSA {
      * A dummy address of the terminal state.
      */
     static final int TERMINAL_STATE = 0;
+    /**
+     * Shift of the arc count bits in the flags of a node's first arc, used by the arc index.
+     */
+    private static final int ARC_COUNT_SHIFT = 2;
+    /**
+     * Arc count value marking a node with a direct-indexed label table.
+     */
+    private static final int DENSE_NODE = 0xff >>> ARC_COUNT_SHIFT;
+    /**
+     * Default minimum number of arcs of a node for a direct-indexed label table.
+     */
+    public static final int DEFAULT_DENSE_FAN_OUT = 24;
     /**
      * An epsilon state. The first and only arc of this state points either
      * to the root or to the terminal state, indicating an empty automaton.
@@ -67,15 +88,80 @@ public final class ConstantArcSizeFSA extends FSA {
      */
     private final byte[] data;
 
+    /**
+     * Sorted addresses of nodes with a direct-indexed label table, or null if there is no arc index.
+     */
+    private final int[] denseNodes;
+
+    /**
+     * Direct-indexed label tables, 256 arcs per entry of {@link #denseNodes}.
+     */
+    private final int[] denseArcs;
+
     /**
      * @param data FSA data. There must be no trailing bytes after the last state.
      */
     ConstantArcSizeFSA(byte[] data, int epsilon) {
+        this(data, epsilon, null, null);
+    }
+
+    private ConstantArcSizeFSA(byte[] data, int epsilon, int[] denseNodes, int[] denseArcs) {
         if (epsilon != 0) {
             throw new IllegalArgumentException("Epsilon is not zero?");
         }
         this.epsilon = epsilon;
         this.data = data;
+        this.denseNodes = denseNodes;
+        this.denseArcs = denseArcs;
+    }
+
+    /**
+     * Build an arc index for constant-time label lookup in {@link #getArc(int, byte)}. Nodes with
+     * at least <code>denseFanOut</code> arcs get a direct-indexed label table, all other nodes
+     * are searched by binary search over their sorted labels. The serialized data is shared and
+     * updated in place; this automaton remains valid, but should be discarded.
+     *
+     * @param denseFanOut minimum number of arcs of a node for a direct-indexed label table
+     * @return an automaton with the arc index
+     */
+    public ConstantArcSizeFSA withArcIndex(int denseFanOut) {
+        if (denseFanOut < 2 || denseFanOut > DENSE_NODE) {
+            throw new IllegalArgumentException("dense fan-out must be between 2 and " + DENSE_NODE);
+        }
+        List<Integer> dense = new ArrayList<>();
+        visitAllStates(node -> {
+            int arcs = 0;
+            int previous = -1;
+            for (int arc = getFirstArc(node); arc != 0; arc = getNextArc(arc)) {
+                int label = getArcLabel(arc) & 0xff;
+                if (label <= previous) {
+                    // unsorted labels, leave the node to linear search
+                    setArcCount(node, 0);
+                    return true;
+                }
+                previous = label;
+                arcs++;
+            }
+            if (arcs >= denseFanOut) {
+                setArcCount(node, DENSE_NODE);
+                dense.add(node);
+            } else {
+                setArcCount(node, arcs);
+            }
+            return true;
+        });
+        int[] nodes = new int[dense.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = dense.get(i);
+        }
+        Arrays.sort(nodes);
+        int[] arcs = new int[nodes.length * 256];
+        for (int i = 0; i < nodes.length; i++) {
+            for (int arc = getFirstArc(nodes[i]); arc != 0; arc = getNextArc(arc)) {
+                arcs[i * 256 + (getArcLabel(arc) & 0xff)] = arc;
+            }
+        }
+        return new ConstantArcSizeFSA(data, epsilon, nodes, arcs);
     }
 
     @Override
@@ -90,6 +176,17 @@ public final class ConstantArcSizeFSA extends FSA {
 
     @Override
     public int getArc(int node, byte label) {
+        if (denseNodes != null) {
+            int arcs = (data[node + FLAGS_OFFSET] & 0xff) >>> ARC_COUNT_SHIFT;
+            if (arcs == DENSE_NODE) {
+                int i = Arrays.binarySearch(denseNodes, node);
+                if (i >= 0) {
+                    return denseArcs[i * 256 + (label & 0xff)];
+                }
+            } else if (arcs > 0) {
+                return binarySearch(node, arcs, label & 0xff);
+            }
+        }
         for (int arc = getFirstArc(node); arc != 0; arc = getNextArc(arc)) {
             if (getArcLabel(arc) == label) {
                 return arc;
@@ -98,6 +195,24 @@ public final class ConstantArcSizeFSA extends FSA {
         return 0;
     }
 
+    private int binarySearch(int node, int arcs, int label) {
+        int low = 0;
+        int high = arcs - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int arc = node + mid * ARC_SIZE;
+            int midLabel = data[arc + LABEL_OFFSET] & 0xff;
+            if (midLabel < label) {
+                low = mid + 1;
+            } else if (midLabel > label) {
+                high = mid - 1;
+            } else {
+                return arc;
+            }
+        }
+        return 0;
+    }
+
     @Override
     public int getNextArc(int arc) {
         if (isArcLast(arc)) {
@@ -138,6 +253,11 @@ public final class ConstantArcSizeFSA extends FSA {
         return (data[arc + FLAGS_OFFSET] & BIT_ARC_LAST) != 0;
     }
 
+    private void setArcCount(int node, int arcs) {
+        data[node + FLAGS_OFFSET] = (byte) ((data[node + FLAGS_OFFSET] & (BIT_ARC_FINAL | BIT_ARC_LAST))
+                | (arcs << ARC_COUNT_SHIFT));
+    }
+
     @Override
     public int getEndNode(int arc) {
         return getArcTarget(arc);
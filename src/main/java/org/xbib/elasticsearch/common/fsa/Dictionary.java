@@ -2,24 +2,82 @@ package org.xbib.elasticsearch.common.fsa;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  *
  */
 public class Dictionary {
 
+    /**
+     * Maximum level of chained lemma lookups.
+     */
+    static final int MAX_LEVEL = 3;
+
     private FSA fsa;
 
     private FSATraversal matcher;
 
+    private boolean compact;
+
+    private boolean arcIndex;
+
+    private boolean perfectHash;
+
+    private LemmaTable lemmaTable;
+
+    /**
+     * Use the compact {@link CFSA2} encoding for the automaton, which trades some lookup
+     * speed for a much smaller heap footprint.
+     *
+     * @param compact true if the automaton should be compacted after loading
+     * @return this dictionary
+     */
+    public Dictionary setCompact(boolean compact) {
+        this.compact = compact;
+        return this;
+    }
+
+    /**
+     * Build an arc index for the automaton, so that each input byte is matched in constant
+     * time instead of scanning all arcs of a node. Ignored for compact automata.
+     *
+     * @param arcIndex true if the automaton should be indexed after loading
+     * @return this dictionary
+     * @see ConstantArcSizeFSA#withArcIndex(int)
+     */
+    public Dictionary setArcIndex(boolean arcIndex) {
+        this.arcIndex = arcIndex;
+        return this;
+    }
+
+    /**
+     * Store only the inflected forms in the automaton, and map them by perfect hash to
+     * a compact table of suffix-encoded lemmas. Chained lemmas are resolved when loading,
+     * so a lookup is a single traversal of the automaton. Applies to {@link #load(Reader)}.
+     *
+     * @param perfectHash true if lemmas should be looked up by perfect hash
+     * @return this dictionary
+     * @see LemmaTable
+     */
+    public Dictionary setPerfectHash(boolean perfectHash) {
+        this.perfectHash = perfectHash;
+        return this;
+    }
+
     public Dictionary load(String language) throws IOException {
         return load(new InputStreamReader(this.getClass()
                 .getResourceAsStream(language + "-lemma-utf8.txt"), StandardCharsets.UTF_8));
@@ -27,6 +85,10 @@ public class Dictionary {
 
     public Dictionary load(Reader in) throws IOException {
         BufferedReader reader = new BufferedReader(in);
+        if (perfectHash) {
+            loadPerfectHash(reader);
+            return this;
+        }
         List<byte[]> lines = new ArrayList<>();
         String line;
         while ((line = reader.readLine()) != null) {
@@ -38,11 +100,118 @@ public class Dictionary {
         for (byte[] b : lines) {
             builder.add(b, 0, b.length);
         }
-        this.fsa = builder.complete();
+        setFSA(builder.complete());
+        return this;
+    }
+
+    /**
+     * Load a dictionary that is too large to be sorted in memory. The lines are sorted
+     * externally in chunks of bounded size, and the merged runs are streamed into the
+     * automaton builder.
+     *
+     * @param in        reader of the dictionary lines
+     * @param tempDir   directory for temporary files
+     * @param chunkSize maximum number of bytes to sort in memory
+     * @return this dictionary
+     * @throws IOException if reading or sorting fails
+     * @see ExternalFSABuilder
+     */
+    public Dictionary load(Reader in, Path tempDir, int chunkSize) throws IOException {
+        try (BufferedReader reader = new BufferedReader(in);
+             ExternalFSABuilder builder = new ExternalFSABuilder(tempDir, chunkSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                byte[] b = line.replace('\t', '+').getBytes(StandardCharsets.UTF_8);
+                builder.add(b, 0, b.length);
+            }
+            setFSA(builder.complete());
+        }
+        return this;
+    }
+
+    /**
+     * Load a dictionary automaton compiled by {@link DictionaryCompiler}.
+     *
+     * @param in input stream of the compiled automaton
+     * @return this dictionary
+     * @throws IOException if the automaton can not be read
+     */
+    public Dictionary loadFSA(InputStream in) throws IOException {
+        this.fsa = CFSA2.read(in);
         this.matcher = new FSATraversal(fsa);
         return this;
     }
 
+    private void loadPerfectHash(BufferedReader reader) throws IOException {
+        // the first lemma of each inflected form in UTF-8 byte order
+        Map<String, byte[]> lemmas = new HashMap<>();
+        // forms with an entry without lemma are never reduced
+        Set<String> unreduced = new HashSet<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int pos = line.indexOf('\t');
+            if (pos < 0 || pos == line.length() - 1) {
+                unreduced.add(pos < 0 ? line : line.substring(0, pos));
+                continue;
+            }
+            byte[] lemma = line.substring(pos + 1).replace('\t', '+').getBytes(StandardCharsets.UTF_8);
+            byte[] previous = lemmas.putIfAbsent(line.substring(0, pos), lemma);
+            if (previous != null && FSABuilder.LEXICAL_ORDERING.compare(lemma, previous) < 0) {
+                lemmas.put(line.substring(0, pos), lemma);
+            }
+        }
+        reader.close();
+        List<byte[][]> entries = new ArrayList<>();
+        for (String form : lemmas.keySet()) {
+            String request = form;
+            for (int level = 0; level <= MAX_LEVEL && !unreduced.contains(request); level++) {
+                byte[] lemma = lemmas.get(request);
+                if (lemma == null) {
+                    break;
+                }
+                String s = new String(lemma, StandardCharsets.UTF_8);
+                if (s.equals(request)) {
+                    break;
+                }
+                request = s;
+            }
+            if (!request.equals(form)) {
+                entries.add(new byte[][] { form.getBytes(StandardCharsets.UTF_8), request.getBytes(StandardCharsets.UTF_8) });
+            }
+        }
+        entries.sort((e1, e2) -> FSABuilder.LEXICAL_ORDERING.compare(e1[0], e2[0]));
+        List<byte[]> forms = new ArrayList<>(entries.size());
+        List<byte[]> resolved = new ArrayList<>(entries.size());
+        FSABuilder builder = new FSABuilder();
+        for (byte[][] entry : entries) {
+            builder.add(entry[0], 0, entry[0].length);
+            forms.add(entry[0]);
+            resolved.add(entry[1]);
+        }
+        this.fsa = new CFSA2Serializer().withNumbers().serialize(builder.complete());
+        this.matcher = new FSATraversal(fsa);
+        this.lemmaTable = new LemmaTable(forms, resolved);
+    }
+
+    private void setFSA(FSA automaton) {
+        if (compact) {
+            this.fsa = new CFSA2Serializer().serialize(automaton);
+        } else if (arcIndex) {
+            this.fsa = ((ConstantArcSizeFSA) automaton).withArcIndex(ConstantArcSizeFSA.DEFAULT_DENSE_FAN_OUT);
+        } else {
+            this.fsa = automaton;
+        }
+        this.matcher = new FSATraversal(fsa);
+    }
+
+    FSA getFSA() {
+        return fsa;
+    }
+
+    LemmaTable getLemmaTable() {
+        return lemmaTable;
+    }
+
     public CharSequence lookup(CharSequence prefix) throws CharacterCodingException {
         if (prefix == null || prefix.length() == 0) {
             return prefix;
@@ -55,7 +224,10 @@ public class Dictionary {
     }
 
     public CharSequence lookup(ByteBuffer buf, String request, int level) {
-        if (level > 3) {
+        if (lemmaTable != null) {
+            return lookupPerfectHash(buf, request);
+        }
+        if (level > MAX_LEVEL) {
             return request;
         }
         MatchResult match = matcher.match(buf.array(), buf.position(), buf.remaining(), fsa.getRootNode());
@@ -79,4 +251,21 @@ public class Dictionary {
         }
         return request;
     }
+
+    private CharSequence lookupPerfectHash(ByteBuffer buf, String request) {
+        if (!buf.hasRemaining() || fsa.getRootNode() == 0) {
+            return request;
+        }
+        int hash = matcher.perfectHash(buf.array(), buf.position(), buf.remaining(), fsa.getRootNode());
+        if (hash < 0) {
+            return request;
+        }
+        int entry = lemmaTable.getEntry(hash);
+        int length = buf.remaining() - lemmaTable.getStrip(entry);
+        int suffixLength = lemmaTable.getSuffixLength(entry);
+        byte[] b = new byte[length + suffixLength];
+        System.arraycopy(buf.array(), buf.position(), b, 0, length);
+        System.arraycopy(lemmaTable.getEntries(), lemmaTable.getSuffixStart(entry), b, length, suffixLength);
+        return new String(b, StandardCharsets.UTF_8);
+    }
 }
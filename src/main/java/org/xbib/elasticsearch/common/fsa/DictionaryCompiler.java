@@ -0,0 +1,51 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Offline compiler for large lemma dictionaries. Reads a UTF-8 text file with lines of
+ * tab-separated inflected forms and lemmas, sorts it externally with bounded memory, and
+ * writes the finished automaton in {@link CFSA2} encoding, ready to be loaded by
+ * {@link Dictionary#loadFSA(java.io.InputStream)}.
+ *
+ * Usage: <code>DictionaryCompiler input.txt output.fsa [chunk size in MB]</code>
+ */
+public class DictionaryCompiler {
+
+    private final Path tempDir;
+
+    private final int chunkSize;
+
+    /**
+     * @param tempDir   directory for temporary files
+     * @param chunkSize maximum number of bytes to sort in memory
+     */
+    public DictionaryCompiler(Path tempDir, int chunkSize) {
+        this.tempDir = tempDir;
+        this.chunkSize = chunkSize;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: " + DictionaryCompiler.class.getName()
+                    + " <input.txt> <output.fsa> [chunk size in MB]");
+            System.exit(1);
+        }
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) * 1024 * 1024 : ExternalFSABuilder.DEFAULT_CHUNK_SIZE;
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        new DictionaryCompiler(tempDir, chunkSize).compile(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    public void compile(Path inputPath, Path outputPath) throws IOException {
+        Dictionary dictionary = new Dictionary().setCompact(true)
+                .load(Files.newBufferedReader(inputPath, StandardCharsets.UTF_8), tempDir, chunkSize);
+        try (OutputStream out = Files.newOutputStream(outputPath)) {
+            ((CFSA2) dictionary.getFSA()).write(out);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable lookup context for a {@link Dictionary}. The context caches the UTF-8
+ * encoder and decoder, the byte and char buffers, the match result and the final states
+ * iterator, so repeated lookups do not produce garbage. It gives the same results as
+ * {@link Dictionary#lookup(CharSequence)}.
+ *
+ * A lookup context is not thread-safe and is meant to be held by a single token stream.
+ */
+public final class DictionaryLookup {
+
+    private final FSA fsa;
+
+    private final FSATraversal matcher;
+
+    private final MatchResult matchResult;
+
+    private final LemmaTable lemmaTable;
+
+    private final FSAFinalStatesIterator finalStatesIterator;
+
+    private final CharsetEncoder encoder;
+
+    private final CharsetDecoder decoder;
+
+    private char[] chars;
+
+    private CharBuffer charBuffer;
+
+    private byte[] bytes;
+
+    private ByteBuffer byteBuffer;
+
+    private int length;
+
+    private CharBuffer target;
+
+    /**
+     * @param dictionary the dictionary
+     */
+    public DictionaryLookup(Dictionary dictionary) {
+        this.fsa = dictionary.getFSA();
+        this.matcher = new FSATraversal(fsa);
+        this.matchResult = new MatchResult();
+        this.lemmaTable = dictionary.getLemmaTable();
+        this.finalStatesIterator = new FSAFinalStatesIterator(fsa, fsa.getRootNode());
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.decoder = StandardCharsets.UTF_8.newDecoder();
+        this.chars = new char[32];
+        this.charBuffer = CharBuffer.wrap(chars);
+        this.bytes = new byte[64];
+        this.byteBuffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Look up the base form of a term. The base form is the term itself if it is not
+     * found in the dictionary.
+     *
+     * @param term   term characters
+     * @param offset offset of the term
+     * @param len    length of the term
+     * @return the length of the base form in UTF-8 bytes, zero for an empty term
+     * @throws CharacterCodingException if the term is not valid UTF-16
+     */
+    public int lookup(char[] term, int offset, int len) throws CharacterCodingException {
+        length = 0;
+        if (len == 0) {
+            return 0;
+        }
+        encode(term, offset, len);
+        if (lemmaTable != null) {
+            return lookupPerfectHash();
+        }
+        for (int level = 0; level <= Dictionary.MAX_LEVEL; level++) {
+            matcher.match(matchResult, bytes, 0, length, fsa.getRootNode());
+            if (matchResult.getKind() != MatchResult.SEQUENCE_IS_A_PREFIX) {
+                break;
+            }
+            final int arc = fsa.getArc(matchResult.getNode(), (byte) '+');
+            if (arc == 0 || fsa.isArcFinal(arc)) {
+                break;
+            }
+            finalStatesIterator.restartFrom(fsa.getEndNode(arc));
+            if (!finalStatesIterator.hasNext()) {
+                break;
+            }
+            ByteBuffer buffer = finalStatesIterator.next();
+            int n = buffer.remaining();
+            if (n == length && FSABuilder.compare(buffer.array(), buffer.position(), n, bytes, 0, length) == 0) {
+                break;
+            }
+            ensureBytes(n);
+            System.arraycopy(buffer.array(), buffer.position(), bytes, 0, n);
+            length = n;
+        }
+        return length;
+    }
+
+    private int lookupPerfectHash() {
+        int root = fsa.getRootNode();
+        int hash = root != 0 ? matcher.perfectHash(bytes, 0, length, root) : -1;
+        if (hash >= 0) {
+            int entry = lemmaTable.getEntry(hash);
+            int suffixLength = lemmaTable.getSuffixLength(entry);
+            length -= lemmaTable.getStrip(entry);
+            ensureBytes(length + suffixLength);
+            System.arraycopy(lemmaTable.getEntries(), lemmaTable.getSuffixStart(entry), bytes, length, suffixLength);
+            length += suffixLength;
+        }
+        return length;
+    }
+
+    /**
+     * @return an upper bound for the number of chars of the base form found by the
+     * last lookup
+     */
+    public int getMaxLength() {
+        return length;
+    }
+
+    /**
+     * Decode the base form found by the last lookup.
+     *
+     * @param buffer the target buffer, at least {@link #getMaxLength()} chars long
+     * @return the number of chars written to the start of the buffer
+     * @throws CharacterCodingException if the base form is not valid UTF-8
+     */
+    public int decode(char[] buffer) throws CharacterCodingException {
+        if (target == null || target.array() != buffer) {
+            target = CharBuffer.wrap(buffer);
+        }
+        target.clear();
+        byteBuffer.clear();
+        byteBuffer.limit(length);
+        decoder.reset();
+        CoderResult result = decoder.decode(byteBuffer, target, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        decoder.flush(target);
+        return target.position();
+    }
+
+    private void encode(char[] term, int offset, int len) throws CharacterCodingException {
+        if (chars.length < len) {
+            chars = new char[len];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        System.arraycopy(term, offset, chars, 0, len);
+        ensureBytes(len * 3);
+        charBuffer.clear();
+        charBuffer.limit(len);
+        byteBuffer.clear();
+        encoder.reset();
+        CoderResult result = encoder.encode(charBuffer, byteBuffer, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        encoder.flush(byteBuffer);
+        length = byteBuffer.position();
+    }
+
+    private void ensureBytes(int n) {
+        if (bytes.length < n) {
+            bytes = Arrays.copyOf(bytes, n);
+            byteBuffer = ByteBuffer.wrap(bytes);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An automaton builder for input that is too large to be sorted in memory. Sequences
+ * may be added in any order. They are collected in chunks of bounded size, each chunk
+ * is sorted and written to a temporary file (a run), and on completion the sorted runs
+ * are merged and streamed into a {@link FSABuilder}. Duplicate sequences are dropped.
+ *
+ * Heap consumption is bounded by the chunk size plus the size of the automaton itself,
+ * independent of the size of the input.
+ */
+public final class ExternalFSABuilder implements Closeable {
+
+    /**
+     * Default chunk size in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Estimated per-sequence overhead of a chunk in bytes (array header and reference).
+     */
+    private static final int SEQUENCE_OVERHEAD = 24;
+
+    private final Path tempDir;
+
+    private final int chunkSize;
+
+    private final List<byte[]> chunk;
+
+    private final List<Path> runs;
+
+    private long chunkBytes;
+
+    /**
+     * @param tempDir   directory for the temporary run files
+     * @param chunkSize the maximum number of bytes of sequences to sort in memory
+     */
+    public ExternalFSABuilder(Path tempDir, int chunkSize) {
+        this.tempDir = tempDir;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<>();
+        this.runs = new ArrayList<>();
+    }
+
+    /**
+     * Add a sequence, in any order.
+     *
+     * @param sequence sequence
+     * @param start    start
+     * @param len      len
+     * @throws IOException if a run can not be written
+     */
+    public void add(byte[] sequence, int start, int len) throws IOException {
+        chunk.add(Arrays.copyOfRange(sequence, start, start + len));
+        chunkBytes += len + SEQUENCE_OVERHEAD;
+        if (chunkBytes >= chunkSize) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Sort and merge all sequences and build the automaton.
+     *
+     * @return FSA
+     * @throws IOException if the runs can not be read
+     */
+    public FSA complete() throws IOException {
+        FSABuilder builder = new FSABuilder();
+        if (runs.isEmpty()) {
+            chunk.sort(FSABuilder.LEXICAL_ORDERING);
+            byte[] previous = null;
+            for (byte[] b : chunk) {
+                if (previous == null || FSABuilder.compare(previous, 0, previous.length, b, 0, b.length) != 0) {
+                    builder.add(b, 0, b.length);
+                }
+                previous = b;
+            }
+            chunk.clear();
+            return builder.complete();
+        }
+        flushChunk();
+        PriorityQueue<Run> queue = new PriorityQueue<>(runs.size());
+        try {
+            for (Path path : runs) {
+                Run run = new Run(path);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+            byte[] previous = null;
+            int previousLength = 0;
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                if (previous == null || FSABuilder.compare(previous, 0, previousLength, run.current, 0, run.length) != 0) {
+                    builder.add(run.current, 0, run.length);
+                    if (previous == null || previous.length < run.length) {
+                        previous = new byte[run.length];
+                    }
+                    System.arraycopy(run.current, 0, previous, 0, run.length);
+                    previousLength = run.length;
+                }
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.close();
+            }
+        }
+        return builder.complete();
+    }
+
+    /**
+     * Delete all temporary runs.
+     *
+     * @throws IOException if a run can not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path path : runs) {
+            Files.deleteIfExists(path);
+        }
+        runs.clear();
+        chunk.clear();
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        chunk.sort(FSABuilder.LEXICAL_ORDERING);
+        Path path = Files.createTempFile(tempDir, "fsa", ".run");
+        runs.add(path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            for (byte[] b : chunk) {
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        }
+        chunk.clear();
+        chunkBytes = 0L;
+    }
+
+    /**
+     * A sorted run, positioned at its current sequence.
+     */
+    private static final class Run implements Comparable<Run>, Closeable {
+
+        private final DataInputStream in;
+
+        private byte[] current = new byte[64];
+
+        private int length;
+
+        Run(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        boolean next() throws IOException {
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (current.length < length) {
+                current = new byte[length];
+            }
+            in.readFully(current, 0, length);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Run o) {
+            return FSABuilder.compare(current, 0, length, o.current, 0, o.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.xbib.elasticsearch.common.fsa;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact table of lemmas, indexed by the perfect hash of the inflected forms in a
+ * {@link Dictionary}. Lemmas are suffix-encoded relative to their inflected form: an
+ * entry is the number of UTF-8 bytes to strip from the end of the inflected form,
+ * followed by the bytes to append. Entries are deduplicated, so that the many inflected
+ * forms sharing a rule such as "strip one byte, append nothing" share a single entry,
+ * and entry ids are packed into as few bytes as needed.
+ */
+final class LemmaTable {
+
+    /**
+     * Entry ids, packed with {@link #idWidth} bytes per perfect hash.
+     */
+    private final byte[] ids;
+
+    private final int idWidth;
+
+    /**
+     * Serialized entries, each a variable-length strip count followed by the suffix bytes.
+     */
+    private final byte[] entries;
+
+    /**
+     * Start offsets of the entries, with a trailing end offset.
+     */
+    private final int[] offsets;
+
+    /**
+     * @param inflected sorted inflected forms, in perfect hash order
+     * @param lemmas    the lemma for each inflected form
+     */
+    LemmaTable(List<byte[]> inflected, List<byte[]> lemmas) {
+        Map<ByteBuffer, Integer> entryIds = new HashMap<>();
+        int[] entryOfHash = new int[inflected.size()];
+        byte[] buffer = new byte[64];
+        byte[] pool = new byte[256];
+        int[] starts = new int[16];
+        int poolSize = 0;
+        for (int i = 0; i < entryOfHash.length; i++) {
+            byte[] form = inflected.get(i);
+            byte[] lemma = lemmas.get(i);
+            int prefix = 0;
+            while (prefix < form.length && prefix < lemma.length && form[prefix] == lemma[prefix]) {
+                prefix++;
+            }
+            int suffixLength = lemma.length - prefix;
+            if (buffer.length < suffixLength + 5) {
+                buffer = new byte[suffixLength + 5];
+            }
+            int len = CFSA2.writeVInt(buffer, 0, form.length - prefix);
+            System.arraycopy(lemma, prefix, buffer, len, suffixLength);
+            len += suffixLength;
+            ByteBuffer key = ByteBuffer.wrap(Arrays.copyOf(buffer, len));
+            Integer id = entryIds.get(key);
+            if (id == null) {
+                id = entryIds.size();
+                entryIds.put(key, id);
+                if (poolSize + len > pool.length) {
+                    pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + len));
+                }
+                System.arraycopy(buffer, 0, pool, poolSize, len);
+                if (id + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[id] = poolSize;
+                poolSize += len;
+            }
+            entryOfHash[i] = id;
+        }
+        int count = entryIds.size();
+        starts[count] = poolSize;
+        this.entries = Arrays.copyOf(pool, poolSize);
+        this.offsets = Arrays.copyOf(starts, count + 1);
+        int width = 1;
+        while (width < 4 && count > 1 << (8 * width)) {
+            width++;
+        }
+        this.idWidth = width;
+        this.ids = new byte[entryOfHash.length * width];
+        for (int i = 0; i < entryOfHash.length; i++) {
+            int id = entryOfHash[i];
+            for (int b = width - 1; b >= 0; b--) {
+                ids[i * width + b] = (byte) id;
+                id >>>= 8;
+            }
+        }
+    }
+
+    /**
+     * @param hash perfect hash of an inflected form
+     * @return the entry id of the inflected form's lemma
+     */
+    int getEntry(int hash) {
+        int id = 0;
+        for (int b = 0; b < idWidth; b++) {
+            id = (id << 8) | (ids[hash * idWidth + b] & 0xff);
+        }
+        return id;
+    }
+
+    /**
+     * @param entry entry id
+     * @return the number of bytes to strip from the end of the inflected form
+     */
+    int getStrip(int entry) {
+        return CFSA2.readVInt(entries, offsets[entry]);
+    }
+
+    /**
+     * @param entry entry id
+     * @return the offset of the suffix bytes in {@link #getEntries()}
+     */
+    int getSuffixStart(int entry) {
+        return offsets[entry] + CFSA2.vIntLength(getStrip(entry));
+    }
+
+    /**
+     * @param entry entry id
+     * @return the number of suffix bytes
+     */
+    int getSuffixLength(int entry) {
+        return offsets[entry + 1] - getSuffixStart(entry);
+    }
+
+    byte[] getEntries() {
+        return entries;
+    }
+}
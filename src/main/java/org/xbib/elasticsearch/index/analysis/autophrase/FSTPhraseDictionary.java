@@ -0,0 +1,294 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.CharsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.CharSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Outputs;
+import org.apache.lucene.util.fst.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A dictionary of auto phrases in a Lucene {@link FST}. The input of the FST is the
+ * sequence of the phrase tokens, separated by {@link #SEPARATOR}, and the output is the
+ * token to emit for the phrase. Common prefixes and suffixes of phrases are shared, so
+ * even millions of phrases fit into a modest heap.
+ *
+ * The FST can be compiled when a filter factory is created, or offline, and loaded from
+ * a file. Usage: <code>FSTPhraseDictionary phrases.txt phrases.fst [ignore case] [separator]</code>
+ */
+public final class FSTPhraseDictionary implements PhraseDictionary {
+
+    /**
+     * The label separating the tokens of a phrase.
+     */
+    static final int SEPARATOR = 0;
+
+    private static final int VERSION = 1;
+
+    private final FST<CharsRef> fst;
+
+    private final boolean ignoreCase;
+
+    private final int maxPhraseLength;
+
+    private final int size;
+
+    private FSTPhraseDictionary(FST<CharsRef> fst, boolean ignoreCase, int maxPhraseLength, int size) {
+        this.fst = fst;
+        this.ignoreCase = ignoreCase;
+        this.maxPhraseLength = maxPhraseLength;
+        this.size = size;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: " + FSTPhraseDictionary.class.getName()
+                    + " <phrases.txt> <phrases.fst> [ignore case] [separator]");
+            System.exit(1);
+        }
+        boolean ignoreCase = args.length > 2 && Boolean.parseBoolean(args[2]);
+        char separator = args.length > 3 && !args[3].isEmpty() ? args[3].charAt(0) : ' ';
+        List<String> phrases = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    phrases.add(line);
+                }
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(Paths.get(args[1]))) {
+            compile(phrases, ignoreCase, separator).write(out);
+        }
+    }
+
+    /**
+     * Compile phrases into an FST. Phrase tokens are separated by whitespace.
+     *
+     * @param phrases    the phrases
+     * @param ignoreCase true if tokens should be matched case-insensitive
+     * @param separator  the character joining the tokens of an emitted phrase
+     * @return the dictionary
+     * @throws IOException if the FST can not be built
+     */
+    public static FSTPhraseDictionary compile(Collection<String> phrases, boolean ignoreCase, char separator)
+            throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        int maxPhraseLength = 0;
+        StringBuilder sb = new StringBuilder();
+        for (String phrase : phrases) {
+            String[] tokens = phrase.trim().split("\\s+");
+            if (tokens.length == 0 || tokens[0].isEmpty()) {
+                continue;
+            }
+            sb.setLength(0);
+            for (String token : tokens) {
+                if (sb.length() > 0) {
+                    sb.append((char) SEPARATOR);
+                }
+                for (int i = 0; i < token.length(); i++) {
+                    sb.append(ignoreCase ? Character.toLowerCase(token.charAt(i)) : token.charAt(i));
+                }
+            }
+            sorted.putIfAbsent(sb.toString(), String.join(String.valueOf(separator), tokens));
+            maxPhraseLength = Math.max(maxPhraseLength, tokens.length);
+        }
+        Builder<CharsRef> builder = new Builder<>(FST.INPUT_TYPE.BYTE2, CharSequenceOutputs.getSingleton());
+        IntsRefBuilder scratch = new IntsRefBuilder();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            builder.add(Util.toUTF16(entry.getKey(), scratch), new CharsRef(entry.getValue()));
+        }
+        return new FSTPhraseDictionary(builder.finish(), ignoreCase, maxPhraseLength, sorted.size());
+    }
+
+    /**
+     * Read a dictionary written by {@link #write(OutputStream)}.
+     *
+     * @param in the input stream
+     * @return the dictionary
+     * @throws IOException if the dictionary can not be read
+     */
+    public static FSTPhraseDictionary read(InputStream in) throws IOException {
+        DataInput input = new InputStreamDataInput(in);
+        int version = input.readVInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported phrase dictionary version: " + version);
+        }
+        boolean ignoreCase = input.readByte() != 0;
+        int maxPhraseLength = input.readVInt();
+        int size = input.readVInt();
+        FST<CharsRef> fst = size > 0 ? new FST<>(input, CharSequenceOutputs.getSingleton()) : null;
+        return new FSTPhraseDictionary(fst, ignoreCase, maxPhraseLength, size);
+    }
+
+    /**
+     * @param path path of a dictionary written by {@link #write(OutputStream)}
+     * @return the dictionary
+     * @throws IOException if the dictionary can not be read
+     */
+    public static FSTPhraseDictionary read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * @param out the output stream
+     * @throws IOException if the dictionary can not be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutput output = new OutputStreamDataOutput(out);
+        output.writeVInt(VERSION);
+        output.writeByte((byte) (ignoreCase ? 1 : 0));
+        output.writeVInt(maxPhraseLength);
+        output.writeVInt(size);
+        if (fst != null) {
+            fst.save(output);
+        }
+    }
+
+    @Override
+    public PhraseMatcher newMatcher() {
+        return new Matcher();
+    }
+
+    @Override
+    public int getMaxPhraseLength() {
+        return maxPhraseLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Matches with one cursor into the FST for each token that may begin a phrase.
+     */
+    private final class Matcher implements PhraseMatcher {
+
+        private final Outputs<CharsRef> outputs = fst != null ? fst.outputs : CharSequenceOutputs.getSingleton();
+
+        private final FST.BytesReader reader = fst != null ? fst.getBytesReader() : null;
+
+        /**
+         * Active cursors, ordered by the number of tokens they matched, longest first.
+         */
+        private final Cursor[] cursors = new Cursor[maxPhraseLength + 1];
+
+        private int cursorCount;
+
+        private final int[] matchLengths = new int[maxPhraseLength + 1];
+
+        private final CharsRef[] matchOutputs = new CharsRef[maxPhraseLength + 1];
+
+        private int matchCount;
+
+        Matcher() {
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = new Cursor();
+            }
+        }
+
+        @Override
+        public void reset() {
+            cursorCount = 0;
+            matchCount = 0;
+        }
+
+        @Override
+        public int next(char[] token, int length) throws IOException {
+            matchCount = 0;
+            if (fst == null) {
+                return 0;
+            }
+            // start a new cursor at the root, it is the shortest and goes last
+            Cursor start = cursors[cursorCount];
+            fst.getFirstArc(start.arc);
+            start.output = outputs.getNoOutput();
+            start.length = 0;
+            int n = cursorCount + 1;
+            cursorCount = 0;
+            for (int i = 0; i < n; i++) {
+                Cursor cursor = cursors[i];
+                if (advance(cursor, token, length)) {
+                    if (cursor.arc.isFinal()) {
+                        matchLengths[matchCount] = cursor.length;
+                        matchOutputs[matchCount] = outputs.add(cursor.output, cursor.arc.nextFinalOutput);
+                        matchCount++;
+                    }
+                    if (FST.targetHasArcs(cursor.arc) && cursor.length < maxPhraseLength) {
+                        // keep the cursor, swapping it into the compacted list
+                        cursors[i] = cursors[cursorCount];
+                        cursors[cursorCount++] = cursor;
+                    }
+                }
+            }
+            return cursorCount > 0 ? cursors[0].length : 0;
+        }
+
+        private boolean advance(Cursor cursor, char[] token, int length) throws IOException {
+            if (cursor.length > 0 && !step(cursor, SEPARATOR)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!step(cursor, ignoreCase ? Character.toLowerCase(token[i]) : token[i])) {
+                    return false;
+                }
+            }
+            cursor.length++;
+            return true;
+        }
+
+        private boolean step(Cursor cursor, int label) throws IOException {
+            if (fst.findTargetArc(label, cursor.arc, cursor.arc, reader) == null) {
+                return false;
+            }
+            cursor.output = outputs.add(cursor.output, cursor.arc.output);
+            return true;
+        }
+
+        @Override
+        public int getMatchCount() {
+            return matchCount;
+        }
+
+        @Override
+        public int getMatchLength(int i) {
+            return matchLengths[i];
+        }
+
+        @Override
+        public CharsRef getMatchOutput(int i) {
+            return matchOutputs[i];
+        }
+    }
+
+    private static final class Cursor {
+
+        private final FST.Arc<CharsRef> arc = new FST.Arc<>();
+
+        private CharsRef output;
+
+        private int length;
+    }
+}
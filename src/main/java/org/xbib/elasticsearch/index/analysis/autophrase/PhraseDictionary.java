@@ -0,0 +1,22 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+/**
+ * An immutable dictionary of auto phrases, shared by all token streams of a filter factory.
+ */
+public interface PhraseDictionary {
+
+    /**
+     * @return a new matcher, holding the per-stream state of matching this dictionary
+     */
+    PhraseMatcher newMatcher();
+
+    /**
+     * @return the maximum number of tokens in a phrase
+     */
+    int getMaxPhraseLength();
+
+    /**
+     * @return the number of phrases
+     */
+    int size();
+}
@@ -0,0 +1,46 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+import org.apache.lucene.util.CharsRef;
+
+import java.io.IOException;
+
+/**
+ * Matches the phrases of a {@link PhraseDictionary} in a sequence of tokens, one token
+ * at a time. A matcher is not thread-safe and is meant to be held by a single token stream.
+ */
+public interface PhraseMatcher {
+
+    /**
+     * Forget all tokens matched so far.
+     */
+    void reset();
+
+    /**
+     * Advance the matcher by a token. The phrases ending with the token are available by
+     * {@link #getMatchCount()} until the next call.
+     *
+     * @param token  token buffer
+     * @param length token length
+     * @return the number of trailing tokens, including this token, that are the beginning of
+     * a phrase; no phrase can match starting before them
+     * @throws IOException if the dictionary can not be read
+     */
+    int next(char[] token, int length) throws IOException;
+
+    /**
+     * @return the number of phrases ending with the last token
+     */
+    int getMatchCount();
+
+    /**
+     * @param i index of the match
+     * @return the number of tokens of the phrase
+     */
+    int getMatchLength(int i);
+
+    /**
+     * @param i index of the match
+     * @return the token to emit for the phrase
+     */
+    CharsRef getMatchOutput(int i);
+}
@@ -0,0 +1,217 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.CharsRef;
+
+import java.io.IOException;
+
+/**
+ * Performs "auto phrasing" with a precompiled {@link PhraseDictionary}. The dictionary is
+ * shared, the filter only keeps a {@link PhraseMatcher} and the few tokens that may still be
+ * part of a phrase, so creating a stream is cheap and does not depend on the dictionary size.
+ *
+ * A phrase token is emitted at the position of the first token of the phrase, with a
+ * position length spanning the phrase. Overlapping phrases are all emitted, but phrases
+ * contained in a longer phrase are not. If single tokens are emitted, all tokens are kept,
+ * and each phrase, including contained phrases, is stacked on its first token.
+ */
+public final class PhraseMatchingTokenFilter extends TokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+
+    private final PhraseMatcher matcher;
+
+    private final boolean emitSingleTokens;
+
+    /**
+     * Ring buffer of the tokens read but not yet released.
+     */
+    private final Slot[] slots;
+
+    /**
+     * Number of tokens read.
+     */
+    private int count;
+
+    /**
+     * Number of tokens released, whose output is decided.
+     */
+    private int released;
+
+    /**
+     * Number of tokens that can be released, because no phrase starting at them can
+     * match any more.
+     */
+    private int releasable;
+
+    private boolean exhausted;
+
+    private int position;
+
+    private int lastPosition;
+
+    /**
+     * The index of the last token covered by an emitted phrase.
+     */
+    private int coveredUntil;
+
+    private Slot current;
+
+    private boolean emitToken;
+
+    private int matchFrom;
+
+    private int matchTo;
+
+    public PhraseMatchingTokenFilter(TokenStream input, PhraseDictionary dictionary, boolean emitSingleTokens) {
+        super(input);
+        this.matcher = dictionary.newMatcher();
+        this.emitSingleTokens = emitSingleTokens;
+        this.slots = new Slot[dictionary.getMaxPhraseLength() + 1];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (true) {
+            if (current != null) {
+                if (emitToken) {
+                    emitToken = false;
+                    emit(current);
+                    return true;
+                }
+                if (matchFrom < matchTo) {
+                    emit(current, current.matchLengths[matchFrom], current.matchOutputs[matchFrom]);
+                    matchFrom++;
+                    return true;
+                }
+                current = null;
+            }
+            if (released < releasable) {
+                release(released++);
+            } else if (exhausted) {
+                return false;
+            } else if (input.incrementToken()) {
+                read();
+            } else {
+                exhausted = true;
+                releasable = count;
+            }
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        matcher.reset();
+        count = 0;
+        released = 0;
+        releasable = 0;
+        exhausted = false;
+        position = -1;
+        lastPosition = -1;
+        coveredUntil = -1;
+        current = null;
+    }
+
+    private void read() throws IOException {
+        Slot slot = slots[count % slots.length];
+        if (slot.attributes == null) {
+            slot.attributes = cloneAttributes();
+        } else {
+            copyTo(slot.attributes);
+        }
+        position += posIncAtt.getPositionIncrement();
+        slot.index = count;
+        slot.position = position;
+        slot.endOffset = offsetAtt.endOffset();
+        slot.matchCount = 0;
+        int depth = matcher.next(termAtt.buffer(), termAtt.length());
+        for (int i = 0; i < matcher.getMatchCount(); i++) {
+            int length = matcher.getMatchLength(i);
+            slots[(count - length + 1) % slots.length].add(length, matcher.getMatchOutput(i));
+        }
+        count++;
+        releasable = count - depth;
+    }
+
+    private void release(int index) {
+        current = slots[index % slots.length];
+        if (emitSingleTokens) {
+            // matches were found in the order of their end, so shorter phrases come first
+            emitToken = true;
+            matchFrom = 0;
+            matchTo = current.matchCount;
+            return;
+        }
+        matchFrom = 0;
+        matchTo = 0;
+        if (current.matchCount > 0) {
+            int end = index + current.matchLengths[current.matchCount - 1] - 1;
+            if (end > coveredUntil) {
+                matchFrom = current.matchCount - 1;
+                matchTo = current.matchCount;
+                coveredUntil = end;
+            }
+        }
+        emitToken = index > coveredUntil;
+    }
+
+    private void emit(Slot slot) {
+        slot.attributes.copyTo(this);
+        posIncAtt.setPositionIncrement(slot.position - lastPosition);
+        lastPosition = slot.position;
+    }
+
+    private void emit(Slot slot, int length, CharsRef output) {
+        Slot last = slots[(slot.index + length - 1) % slots.length];
+        slot.attributes.copyTo(this);
+        termAtt.copyBuffer(output.chars, output.offset, output.length);
+        offsetAtt.setOffset(offsetAtt.startOffset(), last.endOffset);
+        posLenAtt.setPositionLength(last.position - slot.position + 1);
+        posIncAtt.setPositionIncrement(slot.position - lastPosition);
+        lastPosition = slot.position;
+    }
+
+    /**
+     * A token read ahead, with the phrases starting at it.
+     */
+    private static final class Slot {
+
+        private AttributeSource attributes;
+
+        private int index;
+
+        private int position;
+
+        private int endOffset;
+
+        private int[] matchLengths = new int[1];
+
+        private CharsRef[] matchOutputs = new CharsRef[1];
+
+        private int matchCount;
+
+        private void add(int length, CharsRef output) {
+            matchLengths = ArrayUtil.grow(matchLengths, matchCount + 1);
+            matchOutputs = ArrayUtil.grow(matchOutputs, matchCount + 1);
+            matchLengths[matchCount] = length;
+            matchOutputs[matchCount++] = output;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CharsRef;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * An immutable token-level trie of auto phrases, with Aho-Corasick failure links.
+ * Each edge is labeled with a whole token, and each node that ends a phrase holds the
+ * token to emit for the phrase. The trie is compiled once, for example by a token filter
+ * factory, and shared by all token streams, which only keep a cursor into the trie.
+ *
+ * Following the failure links, every token of the input is matched in amortized constant
+ * time, so matching is linear in the number of tokens regardless of the number of phrases.
+ */
+public final class PhraseTrie implements PhraseDictionary {
+
+    private final Node root;
+
+    private final int maxPhraseLength;
+
+    private final int size;
+
+    private PhraseTrie(Node root, int maxPhraseLength, int size) {
+        this.root = root;
+        this.maxPhraseLength = maxPhraseLength;
+        this.size = size;
+    }
+
+    /**
+     * Compile phrases into a trie. Phrase tokens are separated by whitespace.
+     *
+     * @param phrases    the phrases
+     * @param ignoreCase true if tokens should be matched case-insensitive
+     * @param separator  the character joining the tokens of an emitted phrase
+     * @return the trie
+     */
+    public static PhraseTrie compile(Collection<String> phrases, boolean ignoreCase, char separator) {
+        Node root = new Node(0, ignoreCase);
+        int maxPhraseLength = 0;
+        int size = 0;
+        for (String phrase : phrases) {
+            String[] tokens = phrase.trim().split("\\s+");
+            if (tokens.length == 0 || tokens[0].isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (String token : tokens) {
+                Node child = node.children.get(token);
+                if (child == null) {
+                    child = new Node(node.depth + 1, ignoreCase);
+                    node.children.put(token, child);
+                }
+                node = child;
+            }
+            if (node.output == null) {
+                node.output = new CharsRef(String.join(String.valueOf(separator), tokens));
+                size++;
+            }
+            maxPhraseLength = Math.max(maxPhraseLength, tokens.length);
+        }
+        // breadth-first, so the failure links of shallower nodes are known
+        Deque<Node> queue = new ArrayDeque<>();
+        for (Node child : root.children.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.remove();
+            for (Map.Entry<Object, Node> entry : node.children.entrySet()) {
+                char[] token = (char[]) entry.getKey();
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.children.containsKey(token, 0, token.length)) {
+                    fail = fail.fail;
+                }
+                Node target = fail.children.get(token, 0, token.length);
+                child.fail = target != null ? target : root;
+                child.dictionaryLink = child.fail.output != null ? child.fail : child.fail.dictionaryLink;
+                queue.add(child);
+            }
+        }
+        root.seal();
+        return new PhraseTrie(root, maxPhraseLength, size);
+    }
+
+    @Override
+    public PhraseMatcher newMatcher() {
+        return new Matcher();
+    }
+
+    /**
+     * @return the root node, the cursor before any token has been matched
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Advance a cursor by a token.
+     *
+     * @param node   the cursor
+     * @param token  token buffer
+     * @param length token length
+     * @return the new cursor, the node of the longest phrase prefix that is a suffix of the
+     * tokens matched so far
+     */
+    public Node next(Node node, char[] token, int length) {
+        Node n = node;
+        while (true) {
+            Node child = n.children.get(token, 0, length);
+            if (child != null) {
+                return child;
+            }
+            if (n == root) {
+                return root;
+            }
+            n = n.fail;
+        }
+    }
+
+    @Override
+    public int getMaxPhraseLength() {
+        return maxPhraseLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A node of the trie.
+     */
+    public static final class Node {
+
+        private final int depth;
+
+        private CharArrayMap<Node> children;
+
+        private Node fail;
+
+        private Node dictionaryLink;
+
+        private CharsRef output;
+
+        private Node(int depth, boolean ignoreCase) {
+            this.depth = depth;
+            this.children = new CharArrayMap<>(2, ignoreCase);
+        }
+
+        private void seal() {
+            for (Node child : children.values()) {
+                child.seal();
+            }
+            children = CharArrayMap.unmodifiableMap(children);
+        }
+
+        /**
+         * @return the number of tokens matched by this node
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the phrase token if this node ends a phrase, or null
+         */
+        public CharsRef getOutput() {
+            return output;
+        }
+
+        /**
+         * @return the nearest node on the failure path that ends a phrase, or null. Following
+         * these links enumerates all shorter phrases that end with the same token.
+         */
+        public Node getDictionaryLink() {
+            return dictionaryLink;
+        }
+    }
+
+    /**
+     * A cursor into the trie.
+     */
+    private final class Matcher implements PhraseMatcher {
+
+        private Node cursor = root;
+
+        private Node[] matches = new Node[1];
+
+        private int matchCount;
+
+        @Override
+        public void reset() {
+            cursor = root;
+            matchCount = 0;
+        }
+
+        @Override
+        public int next(char[] token, int length) {
+            cursor = PhraseTrie.this.next(cursor, token, length);
+            matchCount = 0;
+            Node node = cursor.output != null ? cursor : cursor.dictionaryLink;
+            while (node != null) {
+                matches = ArrayUtil.grow(matches, matchCount + 1);
+                matches[matchCount++] = node;
+                node = node.dictionaryLink;
+            }
+            return cursor.depth;
+        }
+
+        @Override
+        public int getMatchCount() {
+            return matchCount;
+        }
+
+        @Override
+        public int getMatchLength(int i) {
+            return matches[i].depth;
+        }
+
+        @Override
+        public CharsRef getMatchOutput(int i) {
+            return matches[i].output;
+        }
+    }
+}
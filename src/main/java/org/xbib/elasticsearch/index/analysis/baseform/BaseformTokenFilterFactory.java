@@ -9,7 +9,9 @@ import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 import org.xbib.elasticsearch.common.fsa.Dictionary;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
 
 /**
  *
@@ -23,7 +25,7 @@ public class BaseformTokenFilterFactory extends AbstractTokenFilterFactory {
     public BaseformTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
         super(indexSettings, name, settings);
         this.respectKeywords = settings.getAsBoolean("respect_keywords", false);
-        this.dictionary = createDictionary(settings);
+        this.dictionary = createDictionary(environment, settings);
     }
 
     @Override
@@ -31,11 +33,20 @@ public class BaseformTokenFilterFactory extends AbstractTokenFilterFactory {
         return new BaseformTokenFilter(tokenStream, dictionary, respectKeywords);
     }
 
-    private Dictionary createDictionary(Settings settings) {
+    private Dictionary createDictionary(Environment environment, Settings settings) {
         try {
+            String fsaPath = settings.get("fsa_path");
+            if (fsaPath != null) {
+                try (InputStream in = Files.newInputStream(environment.configFile().resolve(fsaPath))) {
+                    return new Dictionary().loadFSA(in);
+                }
+            }
             String lang = settings.get("language", "de");
             String path = "/baseform/" + lang + "-lemma-utf8.txt";
-            return new Dictionary().load(new InputStreamReader(getClass().getResourceAsStream(path), "UTF-8"));
+            boolean compact = settings.getAsBoolean("compact", false);
+            boolean arcIndex = settings.getAsBoolean("arc_index", false);
+            boolean perfectHash = settings.getAsBoolean("perfect_hash", false);
+            return new Dictionary().setCompact(compact).setArcIndex(arcIndex).setPerfectHash(perfectHash).load(new InputStreamReader(getClass().getResourceAsStream(path), "UTF-8"));
         } catch (IOException e) {
             throw new ElasticsearchException("resources in settings not found: " + settings, e);
         }
@@ -4,6 +4,7 @@ import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 import java.io.IOException;
 import java.util.LinkedList;
@@ -12,6 +13,11 @@ import java.util.List;
 /**
  * The ConcatTokenFilter is authored by
  * <a href="http://sujitpal.blogspot.de/2011/07/lucene-token-concatenating-tokenfilter_30.html">Sujit Pal</a>.
+ *
+ * By default, all tokens are buffered, and a phrase is emitted for each combination of the
+ * tokens at the same positions. In streaming mode, the first token at each position is
+ * appended to a single phrase buffer while the input is consumed, and the phrase is cut
+ * at a maximum length, so the memory for a token stream is bounded.
  */
 public final class ConcatTokenFilter extends TokenFilter {
 
@@ -27,16 +33,39 @@ public final class ConcatTokenFilter extends TokenFilter {
 
     private boolean concat = false;
 
+    private final boolean streaming;
+
+    private final int maxLength;
+
+    private char[] phrase;
+
+    private int phraseLength;
+
     protected ConcatTokenFilter(TokenStream input) {
+        this(input, false, 0);
+    }
+
+    /**
+     * @param input the input token stream
+     * @param streaming true if only the first token at each position should be concatenated while streaming
+     * @param maxLength the maximum length of the phrase in streaming mode, or 0 for no limit
+     */
+    protected ConcatTokenFilter(TokenStream input, boolean streaming, int maxLength) {
         super(input);
         this.termAttr = addAttribute(CharTermAttribute.class);
         this.posIncAttr = addAttribute(PositionIncrementAttribute.class);
         this.words = new LinkedList<>();
         this.phrases = new LinkedList<>();
+        this.streaming = streaming;
+        this.maxLength = maxLength > 0 ? maxLength : Integer.MAX_VALUE;
+        this.phrase = streaming ? new char[Math.min(this.maxLength, 256)] : null;
     }
 
     @Override
     public boolean incrementToken() throws IOException {
+        if (streaming) {
+            return incrementTokenStreaming();
+        }
         while (input.incrementToken()) {
             String term = new String(termAttr.buffer(), 0, termAttr.length());
             List<String> word = posIncAttr.getPositionIncrement() > 0 ?
@@ -63,6 +92,55 @@ public final class ConcatTokenFilter extends TokenFilter {
         return false;
     }
 
+    private boolean incrementTokenStreaming() throws IOException {
+        if (concat) {
+            return false;
+        }
+        boolean found = false;
+        while (input.incrementToken()) {
+            if (found && posIncAttr.getPositionIncrement() == 0) {
+                continue;
+            }
+            if (found) {
+                append(' ');
+            }
+            char[] buffer = termAttr.buffer();
+            for (int i = 0; i < termAttr.length() && phraseLength < maxLength; i++) {
+                append(buffer[i]);
+            }
+            found = true;
+        }
+        concat = true;
+        if (!found) {
+            return false;
+        }
+        if (phraseLength == maxLength && Character.isHighSurrogate(phrase[phraseLength - 1])) {
+            phraseLength--;
+        }
+        clearAttributes();
+        termAttr.copyBuffer(phrase, 0, phraseLength);
+        return true;
+    }
+
+    private void append(char ch) {
+        if (phraseLength < maxLength) {
+            if (phraseLength == phrase.length) {
+                phrase = ArrayUtil.grow(phrase, phraseLength + 1);
+            }
+            phrase[phraseLength++] = ch;
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        concat = false;
+        phraseLength = 0;
+        phrases.clear();
+        words.clear();
+        current = null;
+    }
+
     private void makePhrases(List<List<String>> words, List<String> phrases, int currPos) {
         for (int i = currPos; i < words.size(); i++) {
             if (phrases.isEmpty()) {
@@ -1,6 +1,7 @@
 package org.xbib.elasticsearch.index.analysis.concat;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.IndexWriter;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
@@ -11,13 +12,25 @@ import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
  */
 public class ConcatTokenFilterFactory extends AbstractTokenFilterFactory {
 
+    /**
+     * The default maximum phrase length in streaming mode. Phrases of this length can
+     * always be indexed, even if every character takes three bytes in UTF-8.
+     */
+    private static final int DEFAULT_MAX_LENGTH = IndexWriter.MAX_TERM_LENGTH / 3;
+
+    private final boolean streaming;
+
+    private final int maxLength;
+
     public ConcatTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
         super(indexSettings, name, settings);
+        this.streaming = settings.getAsBoolean("streaming", false);
+        this.maxLength = settings.getAsInt("max_length", DEFAULT_MAX_LENGTH);
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        return new ConcatTokenFilter(tokenStream);
+        return new ConcatTokenFilter(tokenStream, streaming, maxLength);
 
     }
 }
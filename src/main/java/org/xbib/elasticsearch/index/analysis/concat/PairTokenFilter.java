@@ -1,5 +1,6 @@
 package org.xbib.elasticsearch.index.analysis.concat;
 
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -7,62 +8,71 @@ import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.Iterator;
 
 /**
- *
+ * Joins a token with the following token if the two tokens form a pair. Pairs are looked up
+ * in the term buffer, so tokens that do not start a pair are passed without copying.
  */
 public final class PairTokenFilter extends TokenFilter {
 
     private final CharTermAttribute termAttr;
 
-    private final Map<String, String> pairs;
+    private final CharArrayMap<String> pairs;
 
-    private final Queue<String> queue;
+    private final Deque<String> queue;
 
-    protected PairTokenFilter(TokenStream input, Map<String, String> pairs) {
+    protected PairTokenFilter(TokenStream input, CharArrayMap<String> pairs) {
         super(input);
         this.termAttr = addAttribute(CharTermAttribute.class);
         this.pairs = pairs;
-        this.queue = new LinkedList<>();
+        this.queue = new ArrayDeque<>();
     }
 
     @Override
     public boolean incrementToken() throws IOException {
         if (!queue.isEmpty()) {
-            termAttr.append(queue.poll());
+            termAttr.setEmpty().append(queue.poll());
             return true;
         }
         if (!input.incrementToken()) {
             return false;
         }
+        String second = pairs.get(termAttr.buffer(), 0, termAttr.length());
+        if (second == null) {
+            return true;
+        }
         Deque<String> stack = new ArrayDeque<>();
-        while (pairs.containsKey(termAttr.toString())) {
+        while (second != null) {
             String term = termAttr.toString();
             stack.push(term);
             if (!input.incrementToken()) {
                 break;
             }
             String next = termAttr.toString();
-            if (pairs.get(term).equals(next)) {
+            if (second.equals(next)) {
                 stack.pop();
                 stack.push(term + " " + next);
                 break;
-            } else if (!pairs.containsKey(next)) {
+            }
+            second = pairs.get(termAttr.buffer(), 0, termAttr.length());
+            if (second == null) {
                 stack.push(next);
             }
         }
-        for (String term : stack) {
-            queue.add(term);
-        }
-        if (!queue.isEmpty()) {
-            termAttr.setEmpty().append(queue.poll());
+        for (Iterator<String> it = stack.descendingIterator(); it.hasNext(); ) {
+            queue.add(it.next());
         }
+        termAttr.setEmpty().append(queue.poll());
         return true;
     }
 
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        queue.clear();
+    }
+
     @Override
     public boolean equals(Object object) {
         return object instanceof PairTokenFilter &&
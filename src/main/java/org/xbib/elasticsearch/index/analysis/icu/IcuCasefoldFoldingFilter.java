@@ -0,0 +1,89 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import com.ibm.icu.text.Normalizer;
+import com.ibm.icu.text.Normalizer2;
+import com.ibm.icu.text.UnicodeSet;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Applies NFKC case folding and UTR#30 folding to token text in a single normalization pass.
+ *
+ * The result is the same as the result of an {@link IcuNormalizerFilter} with NFKC casefold
+ * normalization, followed by an {@link IcuNormalizerFilter} with UTR#30 folding. The few
+ * characters where the order matters are mapped beforehand, see {@link IcuFoldingData}.
+ * Terms that are already folded are left alone after a quick check.
+ */
+public final class IcuCasefoldFoldingFilter extends TokenFilter {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+    private final Normalizer2 normalizer;
+
+    private final UnicodeSet exceptionSet;
+
+    private final Map<Integer, String> exceptions;
+
+    private final StringBuilder mapped = new StringBuilder();
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * @param input      stream
+     * @param normalizer the UTR#30 folding normalizer, optionally filtered
+     * @param exceptionSet the casefold exceptions to map, a subset of the casefold exceptions
+     */
+    public IcuCasefoldFoldingFilter(TokenStream input, Normalizer2 normalizer, UnicodeSet exceptionSet) {
+        super(input);
+        this.normalizer = normalizer;
+        this.exceptionSet = exceptionSet;
+        this.exceptions = IcuFoldingData.getCasefoldExceptions();
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (input.incrementToken()) {
+            // casefold exceptions never pass the quick check
+            if (normalizer.quickCheck(termAtt) != Normalizer.YES) {
+                CharSequence text = termAtt;
+                int length = termAtt.length();
+                int pos = exceptionSet.span(termAtt, UnicodeSet.SpanCondition.NOT_CONTAINED);
+                if (pos < length) {
+                    mapped.setLength(0);
+                    mapped.append(termAtt, 0, pos);
+                    while (pos < length) {
+                        int cp = Character.codePointAt(termAtt, pos);
+                        String s = exceptionSet.contains(cp) ? exceptions.get(cp) : null;
+                        if (s != null) {
+                            mapped.append(s);
+                        } else {
+                            mapped.appendCodePoint(cp);
+                        }
+                        pos += Character.charCount(cp);
+                    }
+                    text = mapped;
+                }
+                buffer.setLength(0);
+                normalizer.normalize(text, buffer);
+                termAtt.setEmpty().append(buffer);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof IcuCasefoldFoldingFilter;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+}
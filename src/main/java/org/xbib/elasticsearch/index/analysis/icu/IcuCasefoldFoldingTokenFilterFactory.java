@@ -0,0 +1,51 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import com.ibm.icu.text.FilteredNormalizer2;
+import com.ibm.icu.text.Normalizer2;
+import com.ibm.icu.text.UnicodeSet;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+import org.elasticsearch.index.analysis.MultiTermAwareComponent;
+
+/**
+ * Uses the {@link IcuCasefoldFoldingFilter} to replace the chain of an <code>icu_normalizer</code>
+ * with <code>nfkc_cf</code> normalization and an <code>icu_folding</code> filter by a single filter.
+ *
+ * Like with <code>icu_folding</code>, the <code>unicodeSetFilter</code> can be used to exclude
+ * characters from folding.
+ */
+public class IcuCasefoldFoldingTokenFilterFactory extends AbstractTokenFilterFactory
+        implements MultiTermAwareComponent {
+
+    private final Normalizer2 normalizer;
+
+    private final UnicodeSet exceptionSet;
+
+    public IcuCasefoldFoldingTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
+                                                Settings settings) {
+        super(indexSettings, name, settings);
+        Normalizer2 base = IcuFoldingData.getInstance(Normalizer2.Mode.COMPOSE);
+        String unicodeSetFilter = settings.get("unicodeSetFilter");
+        if (unicodeSetFilter != null) {
+            UnicodeSet filter = new UnicodeSet(unicodeSetFilter).freeze();
+            this.normalizer = new FilteredNormalizer2(base, filter);
+            this.exceptionSet = new UnicodeSet(IcuFoldingData.getCasefoldExceptionSet()).retainAll(filter).freeze();
+        } else {
+            this.normalizer = base;
+            this.exceptionSet = IcuFoldingData.getCasefoldExceptionSet();
+        }
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new IcuCasefoldFoldingFilter(tokenStream, normalizer, exceptionSet);
+    }
+
+    @Override
+    public Object getMultiTermComponent() {
+        return this;
+    }
+}
@@ -2,11 +2,14 @@ package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.Collator;
 import com.ibm.icu.text.RawCollationKey;
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttributeImpl;
 import org.apache.lucene.util.AttributeFactory;
 import org.apache.lucene.util.BytesRef;
 
+import java.util.Arrays;
+
 /**
  * <p>
  *   Converts each token into its {@link com.ibm.icu.text.CollationKey} and
@@ -43,11 +46,32 @@ import org.apache.lucene.util.BytesRef;
  *   generation timing and key length comparisons between ICU4J and
  *   java.text.Collator over several languages.
  * </p>
+ * <p>
+ *   For fields with many repeated values, such as author or publisher names in sort fields,
+ *   a cache size can be given. Each attribute then keeps a bounded cache from term text to
+ *   collation key bytes, so repeated terms are neither converted to strings nor collated again.
+ *   The cache is cleared when it is full.
+ * </p>
+ * <p>
+ *   For sort fields, collation keys can be trimmed to their first weight levels, for example
+ *   the primary level, and to a maximum length in bytes. Trimmed keys are much shorter, and
+ *   sort in the same order, except that keys of values differing only beyond the trimmed part
+ *   are equal. Shared prefixes of keys are compressed by the terms dictionary and doc values.
+ * </p>
  */
 public class IcuCollationAttributeFactory
         extends AttributeFactory.StaticImplementationAttributeFactory<IcuCollationAttributeFactory.IcuCollatedTermAttributeImpl> {
+
+    private static final byte LEVEL_SEPARATOR_BYTE = 1;
+
     private final Collator collator;
 
+    private final int cacheSize;
+
+    private final int levels;
+
+    private final int maxKeyLength;
+
     /**
      * Create an ICUCollationAttributeFactory, using
      * {@link TokenStream#DEFAULT_TOKEN_ATTRIBUTE_FACTORY} as the
@@ -65,24 +89,82 @@ public class IcuCollationAttributeFactory
      * @param collator CollationKey generator
      */
     public IcuCollationAttributeFactory(AttributeFactory delegate, Collator collator) {
+        this(delegate, collator, 0);
+    }
+
+    /**
+     * Create an ICUCollationAttributeFactory with a collation key cache, using the supplied
+     * Attribute Factory as the factory for all other attributes.
+     * @param delegate Attribute Factory
+     * @param collator CollationKey generator
+     * @param cacheSize maximum number of cached collation keys per attribute, or 0 for no cache
+     */
+    public IcuCollationAttributeFactory(AttributeFactory delegate, Collator collator, int cacheSize) {
+        this(delegate, collator, cacheSize, 0, 0);
+    }
+
+    /**
+     * Create an ICUCollationAttributeFactory with a collation key cache and trimmed collation keys,
+     * using the supplied Attribute Factory as the factory for all other attributes.
+     * @param delegate Attribute Factory
+     * @param collator CollationKey generator
+     * @param cacheSize maximum number of cached collation keys per attribute, or 0 for no cache
+     * @param levels maximum number of weight levels of collation keys, or 0 for all levels
+     * @param maxKeyLength maximum length of collation keys in bytes, or 0 for no limit
+     */
+    public IcuCollationAttributeFactory(AttributeFactory delegate, Collator collator, int cacheSize,
+                                        int levels, int maxKeyLength) {
         super(delegate, IcuCollatedTermAttributeImpl.class);
         this.collator = collator;
+        this.cacheSize = cacheSize;
+        this.levels = levels;
+        this.maxKeyLength = maxKeyLength;
     }
 
     @Override
     public IcuCollatedTermAttributeImpl createInstance() {
-        return new IcuCollatedTermAttributeImpl(collator);
+        return new IcuCollatedTermAttributeImpl(collator, cacheSize, levels, maxKeyLength);
+    }
+
+    /**
+     * Trim a collation key. Trimming keeps the order of keys, but keys that differ only after
+     * the trimmed length, or only in the removed levels, become equal.
+     * @param key the collation key bytes
+     * @param size the size of the collation key
+     * @param levels maximum number of weight levels, or 0 for all levels
+     * @param maxKeyLength maximum length in bytes, or 0 for no limit
+     * @return the length of the trimmed collation key
+     */
+    public static int trimmedLength(byte[] key, int size, int levels, int maxKeyLength) {
+        int length = size;
+        if (levels > 0) {
+            // levels are separated by LEVEL_SEPARATOR_BYTE, which never occurs in weights
+            int level = 1;
+            for (int i = 0; i < size; i++) {
+                if (key[i] == LEVEL_SEPARATOR_BYTE && level++ == levels) {
+                    length = i;
+                    break;
+                }
+            }
+        }
+        if (maxKeyLength > 0 && length > maxKeyLength) {
+            length = maxKeyLength;
+        }
+        return length;
     }
 
     @Override
     public boolean equals(Object other) {
         return this == other || other instanceof IcuCollationAttributeFactory &&
-                ((IcuCollationAttributeFactory) other).collator == collator;
+                ((IcuCollationAttributeFactory) other).collator == collator &&
+                ((IcuCollationAttributeFactory) other).cacheSize == cacheSize &&
+                ((IcuCollationAttributeFactory) other).levels == levels &&
+                ((IcuCollationAttributeFactory) other).maxKeyLength == maxKeyLength;
     }
 
     @Override
     public int hashCode() {
-        return collator.hashCode();
+        return collator.hashCode() ^ cacheSize ^ (levels << 16) ^ (maxKeyLength << 20);
     }
 
     /**
@@ -92,12 +174,23 @@ public class IcuCollationAttributeFactory
     class IcuCollatedTermAttributeImpl extends CharTermAttributeImpl {
         private final Collator collator;
         private final RawCollationKey key = new RawCollationKey();
+        private final int cacheSize;
+        private final CharArrayMap<byte[]> cache;
+        private final int levels;
+        private final int maxKeyLength;
 
         /**
          * Create a new ICU c ollated term attribute implementation.
          * @param collator Collation key generator
+         * @param cacheSize maximum number of cached collation keys, or 0 for no cache
+         * @param levels maximum number of weight levels of collation keys, or 0 for all levels
+         * @param maxKeyLength maximum length of collation keys in bytes, or 0 for no limit
          */
-        IcuCollatedTermAttributeImpl(Collator collator) {
+        IcuCollatedTermAttributeImpl(Collator collator, int cacheSize, int levels, int maxKeyLength) {
+            this.cacheSize = cacheSize;
+            this.levels = levels;
+            this.maxKeyLength = maxKeyLength;
+            this.cache = cacheSize > 0 ? new CharArrayMap<>(Math.min(cacheSize, 1024), false) : null;
             // clone the collator: see http://userguide.icu-project.org/collation/architecture
             try {
                 this.collator = (Collator) collator.clone();
@@ -108,11 +201,31 @@ public class IcuCollationAttributeFactory
 
         @Override
         public BytesRef getBytesRef() {
+            if (cache != null) {
+                return getCachedBytesRef();
+            }
             collator.getRawCollationKey(toString(), key);
             final BytesRef ref = this.builder.get();
             ref.bytes = key.bytes;
             ref.offset = 0;
-            ref.length = key.size;
+            ref.length = trimmedLength(key.bytes, key.size, levels, maxKeyLength);
+            return ref;
+        }
+
+        private BytesRef getCachedBytesRef() {
+            byte[] bytes = cache.get(buffer(), 0, length());
+            if (bytes == null) {
+                collator.getRawCollationKey(toString(), key);
+                bytes = Arrays.copyOf(key.bytes, trimmedLength(key.bytes, key.size, levels, maxKeyLength));
+                if (cache.size() >= cacheSize) {
+                    cache.clear();
+                }
+                cache.put(Arrays.copyOf(buffer(), length()), bytes);
+            }
+            final BytesRef ref = this.builder.get();
+            ref.bytes = bytes;
+            ref.offset = 0;
+            ref.length = bytes.length;
             return ref;
         }
 
@@ -2,6 +2,7 @@ package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.Collator;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
 import org.apache.lucene.collation.CollationKeyAnalyzer;
 
@@ -51,6 +52,25 @@ public final class IcuCollationKeyAnalyzer extends Analyzer {
         this.factory = new IcuCollationAttributeFactory(collator);
     }
 
+    /**
+     * @param collator  the collator
+     * @param cacheSize maximum number of cached collation keys per token stream, or 0 for no cache
+     */
+    public IcuCollationKeyAnalyzer(Collator collator, int cacheSize) {
+        this(collator, cacheSize, 0, 0);
+    }
+
+    /**
+     * @param collator  the collator
+     * @param cacheSize maximum number of cached collation keys per token stream, or 0 for no cache
+     * @param levels maximum number of weight levels of collation keys, or 0 for all levels
+     * @param maxKeyLength maximum length of collation keys in bytes, or 0 for no limit
+     */
+    public IcuCollationKeyAnalyzer(Collator collator, int cacheSize, int levels, int maxKeyLength) {
+        this.factory = new IcuCollationAttributeFactory(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, collator,
+                cacheSize, levels, maxKeyLength);
+    }
+
     @Override
     protected TokenStreamComponents createComponents(String fieldName) {
         KeywordTokenizer tokenizer = new KeywordTokenizer(factory, KeywordTokenizer.DEFAULT_BUFFER_SIZE);
@@ -24,15 +24,45 @@ import java.util.List;
  * Collation customization</a> chapter in icu docs. The <tt>rules</tt> parameter can either
  * embed the rules definition in the settings or refer to an external location
  * (preferable located under the <tt>config</tt> location, relative to it).
+ * The <tt>cacheSize</tt> parameter enables a bounded cache of collation keys, which speeds
+ * up fields with many repeated values.
+ * The <tt>keyLevels</tt> parameter trims collation keys to the given number of weight levels,
+ * and the <tt>maxKeyLength</tt> parameter trims collation keys to the given number of bytes.
  */
 public class IcuCollationKeyAnalyzerProvider extends AbstractIndexAnalyzerProvider<IcuCollationKeyAnalyzer> {
 
     private final Collator collator;
 
+    private final int cacheSize;
+
+    private final int keyLevels;
+
+    private final int maxKeyLength;
+
     public IcuCollationKeyAnalyzerProvider(IndexSettings indexSettings, Environment environment, String name,
                                            Settings settings) {
         super(indexSettings, name, settings);
         this.collator = createCollator(settings);
+        this.cacheSize = settings.getAsInt("cacheSize", 0);
+        this.keyLevels = getKeyLevels(settings);
+        this.maxKeyLength = settings.getAsInt("maxKeyLength", 0);
+    }
+
+    public static int getKeyLevels(Settings settings) {
+        String keyLevels = settings.get("keyLevels");
+        if (keyLevels == null) {
+            return 0;
+        }
+        switch (keyLevels.toLowerCase()) {
+            case "primary":
+                return 1;
+            case "secondary":
+                return 2;
+            case "tertiary":
+                return 3;
+            default:
+                throw new ElasticsearchException("Invalid keyLevels: " + keyLevels);
+        }
     }
 
     public static Collator createCollator(Settings settings) {
@@ -187,6 +217,6 @@ public class IcuCollationKeyAnalyzerProvider extends AbstractIndexAnalyzerProvid
 
     @Override
     public IcuCollationKeyAnalyzer get() {
-        return new IcuCollationKeyAnalyzer(collator);
+        return new IcuCollationKeyAnalyzer(collator, cacheSize, keyLevels, maxKeyLength);
     }
 }
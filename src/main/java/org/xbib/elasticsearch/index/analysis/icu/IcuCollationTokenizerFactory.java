@@ -1,6 +1,7 @@
 package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.Collator;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
@@ -18,7 +19,9 @@ public class IcuCollationTokenizerFactory extends IcuTokenizerFactory {
     public IcuCollationTokenizerFactory(IndexSettings indexSettings, Environment environment, String name,
                                         Settings settings) {
         super(indexSettings, environment, name, settings);
-        this.factory = new IcuCollationAttributeFactory(IcuCollationKeyAnalyzerProvider.createCollator(settings));
+        this.factory = new IcuCollationAttributeFactory(TokenStream.DEFAULT_TOKEN_ATTRIBUTE_FACTORY,
+                IcuCollationKeyAnalyzerProvider.createCollator(settings), settings.getAsInt("cacheSize", 0),
+                IcuCollationKeyAnalyzerProvider.getKeyLevels(settings), settings.getAsInt("maxKeyLength", 0));
     }
 
     @Override
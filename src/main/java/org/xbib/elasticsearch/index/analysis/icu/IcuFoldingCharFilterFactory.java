@@ -1,11 +1,10 @@
 package org.xbib.elasticsearch.index.analysis.icu;
 
+import com.ibm.icu.text.Normalizer2;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 
-import java.io.InputStream;
-
 /**
  * Applies foldings from UTR#30 Character Foldings.
  * Can be filtered to handle certain characters in a specified way.
@@ -25,11 +24,8 @@ public class IcuFoldingCharFilterFactory extends IcuNormalizerCharFilterFactory
     }
 
     @Override
-    protected InputStream getNormalizationResource(Settings settings) {
-        InputStream inputStream = null;
-        if ("utr30".equals(getNormalizationName(settings))) {
-            inputStream = getClass().getResourceAsStream("/icu/utr30.nrm");
-        }
-        return inputStream;
+    protected Normalizer2 getNormalizer(Settings settings) {
+        return "utr30".equals(getNormalizationName(settings)) ?
+                IcuFoldingData.getInstance(getNormalizationMode(settings)) : super.getNormalizer(settings);
     }
 }
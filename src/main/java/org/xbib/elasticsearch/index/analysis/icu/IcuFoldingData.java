@@ -0,0 +1,86 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import com.ibm.icu.text.Normalizer2;
+import com.ibm.icu.text.UnicodeSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The UTR#30 folding data of this bundle, loaded once per node.
+ *
+ * The UTR#30 data is compiled from the NFKC casefold data and the UTR#30 foldings, so a
+ * UTR#30 folding normalizer also performs NFKC case folding. For a few characters, mostly
+ * spacing diacritics and modifier letters, UTR#30 folds the character itself differently
+ * than its NFKC casefold form. These characters are the casefold exceptions: mapping them
+ * to their NFKC casefold form before UTR#30 folding gives the same result as applying the
+ * NFKC casefold normalizer and the UTR#30 folding normalizer one after another.
+ */
+public final class IcuFoldingData {
+
+    private static final String RESOURCE = "/icu/utr30.nrm";
+
+    private static final Map<Normalizer2.Mode, Normalizer2> normalizers = new EnumMap<>(Normalizer2.Mode.class);
+
+    private IcuFoldingData() {
+    }
+
+    /**
+     * @param mode the normalization mode
+     * @return the shared UTR#30 folding normalizer for the mode
+     */
+    public static synchronized Normalizer2 getInstance(Normalizer2.Mode mode) {
+        return normalizers.computeIfAbsent(mode, m -> {
+            try (InputStream inputStream = IcuFoldingData.class.getResourceAsStream(RESOURCE)) {
+                return Normalizer2.getInstance(inputStream, "utr30", m);
+            } catch (IOException e) {
+                throw new UncheckedIOException("unable to load resource " + RESOURCE, e);
+            }
+        });
+    }
+
+    /**
+     * @return the frozen set of casefold exceptions
+     */
+    public static UnicodeSet getCasefoldExceptionSet() {
+        return CasefoldExceptions.SET;
+    }
+
+    /**
+     * @return the casefold exceptions, mapped to their NFKC casefold form
+     */
+    public static Map<Integer, String> getCasefoldExceptions() {
+        return CasefoldExceptions.MAP;
+    }
+
+    private static final class CasefoldExceptions {
+
+        private static final UnicodeSet SET = new UnicodeSet();
+
+        private static final Map<Integer, String> MAP;
+
+        static {
+            Normalizer2 casefold = Normalizer2.getNFKCCasefoldInstance();
+            Normalizer2 folding = getInstance(Normalizer2.Mode.COMPOSE);
+            Map<Integer, String> map = new HashMap<>();
+            for (int cp = 0; cp <= Character.MAX_CODE_POINT; cp++) {
+                if (casefold.isInert(cp)) {
+                    continue;
+                }
+                String s = new String(Character.toChars(cp));
+                String casefolded = casefold.normalize(s);
+                if (!folding.normalize(casefolded).equals(folding.normalize(s))) {
+                    SET.add(cp);
+                    map.put(cp, casefolded);
+                }
+            }
+            SET.freeze();
+            MAP = Collections.unmodifiableMap(map);
+        }
+    }
+}
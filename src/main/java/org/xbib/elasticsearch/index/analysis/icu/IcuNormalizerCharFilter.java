@@ -2,23 +2,42 @@ package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.Normalizer2;
 import org.apache.lucene.analysis.charfilter.BaseCharFilter;
+import org.apache.lucene.util.ArrayUtil;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.Objects;
 
 /**
  * Normalize token text with ICU {@link Normalizer2}.
+ *
+ * The input is read into a window that always ends with an inert character, or at the end
+ * of the input, so the window can be normalized without looking ahead. Spans of the window
+ * that pass {@link Normalizer2#spanQuickCheckYes(CharSequence)} are copied to the reader
+ * unchanged, only the segments in between are normalized. The window is drained completely
+ * before it is refilled, so characters are never shifted.
  */
 public final class IcuNormalizerCharFilter extends BaseCharFilter {
 
     private final Normalizer2 normalizer;
-    private final StringBuilder inputBuffer = new StringBuilder();
+
+    private char[] buffer;
+
+    private CharBuffer window;
+
     private final StringBuilder resultBuffer = new StringBuilder();
-    private final char[] tmpBuffer;
+
+    private int start;
+
+    private int end;
+
+    private int quickCheckYesLimit;
+
+    private int resultPos;
+
     private boolean inputFinished;
-    private boolean afterQuickCheckYes;
-    private int checkedInputBoundary;
+
     private int charCount;
 
     /**
@@ -28,13 +47,14 @@ public final class IcuNormalizerCharFilter extends BaseCharFilter {
      * @param normalizer normalizer to use
      */
     public IcuNormalizerCharFilter(Reader in, Normalizer2 normalizer) {
-        this(in, normalizer, 128);
+        this(in, normalizer, 1024);
     }
 
     private IcuNormalizerCharFilter(Reader in, Normalizer2 normalizer, int bufferSize) {
         super(in);
         this.normalizer = Objects.requireNonNull(normalizer);
-        this.tmpBuffer = new char[bufferSize];
+        this.buffer = new char[bufferSize];
+        this.window = CharBuffer.wrap(buffer);
     }
 
     @Override
@@ -48,114 +68,74 @@ public final class IcuNormalizerCharFilter extends BaseCharFilter {
         if (len <= 0) {
             throw new IllegalArgumentException("len <= 0");
         }
-        while (!inputFinished || inputBuffer.length() > 0 || resultBuffer.length() > 0) {
-            int retLen;
-            if (resultBuffer.length() > 0) {
-                retLen = outputFromResultBuffer(cbuf, off, len);
-                if (retLen > 0) {
-                    return retLen;
-                }
+        while (true) {
+            if (resultPos < resultBuffer.length()) {
+                return outputFromResultBuffer(cbuf, off, len);
             }
-            int resLen = readAndNormalizeFromInput();
-            if (resLen > 0) {
-                retLen = outputFromResultBuffer(cbuf, off, len);
-                if (retLen > 0) {
-                    return retLen;
+            if (start < quickCheckYesLimit) {
+                return outputFromWindow(cbuf, off, len);
+            }
+            if (start == end) {
+                if (inputFinished || !fillWindow()) {
+                    return -1;
                 }
             }
-            readInputToBuffer();
-        }
-        return -1;
-    }
-
-    private int readInputToBuffer() throws IOException {
-        final int len = input.read(tmpBuffer);
-        if (len == -1) {
-            inputFinished = true;
-            return 0;
-        }
-        inputBuffer.append(tmpBuffer, 0, len);
-
-        // if checkedInputBoundary was at the end of a buffer, we need to check that char again
-        checkedInputBoundary = Math.max(checkedInputBoundary - 1, 0);
-        // this loop depends on 'isInert' (changes under normalization) but looks only at characters.
-        // so we treat all surrogates as non-inert for simplicity
-        if (normalizer.isInert(tmpBuffer[len - 1]) && !Character.isSurrogate(tmpBuffer[len - 1])) {
-            return len;
-        } else {
-            return len + readInputToBuffer();
-        }
-    }
-
-    private int readAndNormalizeFromInput() {
-        if (inputBuffer.length() <= 0) {
-            afterQuickCheckYes = false;
-            return 0;
-        }
-        if (!afterQuickCheckYes) {
-            int resLen = readFromInputWhileSpanQuickCheckYes();
-            afterQuickCheckYes = true;
-            if (resLen > 0) {
-                return resLen;
+            quickCheckYesLimit = start + normalizer.spanQuickCheckYes(view(start, end));
+            if (quickCheckYesLimit == start) {
+                normalizeUpToBoundary();
             }
         }
-        int resLen = readFromIoNormalizeUptoBoundary();
-        if (resLen > 0) {
-            afterQuickCheckYes = false;
-        }
-        return resLen;
     }
 
-    private int readFromInputWhileSpanQuickCheckYes() {
-        int end = normalizer.spanQuickCheckYes(inputBuffer);
-        if (end > 0) {
-            resultBuffer.append(inputBuffer.subSequence(0, end));
-            inputBuffer.delete(0, end);
-            checkedInputBoundary = Math.max(checkedInputBoundary - end, 0);
-            charCount += end;
+    /**
+     * Read input into the empty window until the last character is inert, or the input is exhausted.
+     *
+     * @return true if there is input in the window
+     * @throws IOException if the input can not be read
+     */
+    private boolean fillWindow() throws IOException {
+        start = 0;
+        end = 0;
+        quickCheckYesLimit = 0;
+        while (true) {
+            if (end == buffer.length) {
+                buffer = ArrayUtil.grow(buffer, end + 1);
+                window = CharBuffer.wrap(buffer);
+            }
+            int len = input.read(buffer, end, buffer.length - end);
+            if (len == -1) {
+                inputFinished = true;
+                return end > 0;
+            }
+            end += len;
+            // this loop depends on 'isInert' (changes under normalization) but looks only at characters.
+            // so we treat all surrogates as non-inert for simplicity
+            char last = buffer[end - 1];
+            if (normalizer.isInert(last) && !Character.isSurrogate(last)) {
+                return true;
+            }
         }
-        return end;
     }
 
-    private int readFromIoNormalizeUptoBoundary() {
-        // if there's no buffer to normalize, return 0
-        if (inputBuffer.length() <= 0) {
-            return 0;
-        }
-
-        boolean foundBoundary = false;
-        final int bufLen = inputBuffer.length();
-
-        while (checkedInputBoundary <= bufLen - 1) {
-            int charLen = Character.charCount(inputBuffer.codePointAt(checkedInputBoundary));
-            checkedInputBoundary += charLen;
-            if (checkedInputBoundary < bufLen && normalizer.hasBoundaryBefore(inputBuffer
-                    .codePointAt(checkedInputBoundary))) {
-                foundBoundary = true;
+    private void normalizeUpToBoundary() {
+        // the window ends with an inert character or at the end of input, so there is a boundary
+        int limit = start + Character.charCount(Character.codePointAt(buffer, start, end));
+        while (limit < end) {
+            int c = Character.codePointAt(buffer, limit, end);
+            if (normalizer.hasBoundaryBefore(c)) {
                 break;
             }
+            limit += Character.charCount(c);
         }
-        if (!foundBoundary && checkedInputBoundary >= bufLen && inputFinished) {
-            foundBoundary = true;
-            checkedInputBoundary = bufLen;
-        }
-
-        if (!foundBoundary) {
-            return 0;
-        }
-
-        return normalizeInputUpto(checkedInputBoundary);
+        normalizer.normalize(view(start, limit), resultBuffer);
+        resultPos = 0;
+        recordOffsetDiff(limit - start, resultBuffer.length());
+        start = limit;
     }
 
-    private int normalizeInputUpto(final int length) {
-        final int destOrigLen = resultBuffer.length();
-        normalizer.normalizeSecondAndAppend(resultBuffer,
-                inputBuffer.subSequence(0, length));
-        inputBuffer.delete(0, length);
-        checkedInputBoundary = Math.max(checkedInputBoundary - length, 0);
-        final int resultLength = resultBuffer.length() - destOrigLen;
-        recordOffsetDiff(length, resultLength);
-        return resultLength;
+    private CharSequence view(int from, int to) {
+        window.limit(to).position(from);
+        return window;
     }
 
     private void recordOffsetDiff(int inputLength, int outputLength) {
@@ -175,12 +155,18 @@ public final class IcuNormalizerCharFilter extends BaseCharFilter {
         charCount += outputLength;
     }
 
+    private int outputFromWindow(char[] cbuf, int begin, int l) {
+        int len = Math.min(quickCheckYesLimit - start, l);
+        System.arraycopy(buffer, start, cbuf, begin, len);
+        start += len;
+        charCount += len;
+        return len;
+    }
+
     private int outputFromResultBuffer(char[] cbuf, int begin, int l) {
-        int len = Math.min(resultBuffer.length(), l);
-        resultBuffer.getChars(0, len, cbuf, begin);
-        if (len > 0) {
-            resultBuffer.delete(0, len);
-        }
+        int len = Math.min(resultBuffer.length() - resultPos, l);
+        resultBuffer.getChars(resultPos, resultPos + len, cbuf, begin);
+        resultPos += len;
         return len;
     }
 
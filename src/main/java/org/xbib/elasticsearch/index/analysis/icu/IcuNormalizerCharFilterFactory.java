@@ -22,8 +22,7 @@ public class IcuNormalizerCharFilterFactory extends AbstractCharFilterFactory im
     public IcuNormalizerCharFilterFactory(IndexSettings indexSettings, Environment environment, String name,
                                           Settings settings) {
         super(indexSettings, name);
-        Normalizer2 base = Normalizer2.getInstance(getNormalizationResource(settings),
-                getNormalizationName(settings), getNormalizationMode(settings));
+        Normalizer2 base = getNormalizer(settings);
         String unicodeSetFilter = settings.get("unicodeSetFilter");
         this.normalizer = unicodeSetFilter != null ?
                 new FilteredNormalizer2(base, new UnicodeSet(unicodeSetFilter).freeze()) : base;
@@ -39,6 +38,11 @@ public class IcuNormalizerCharFilterFactory extends AbstractCharFilterFactory im
         return this;
     }
 
+    protected Normalizer2 getNormalizer(Settings settings) {
+        return Normalizer2.getInstance(getNormalizationResource(settings),
+                getNormalizationName(settings), getNormalizationMode(settings));
+    }
+
     protected InputStream getNormalizationResource(Settings settings) {
         return null;
     }
@@ -25,8 +25,7 @@ public class IcuNormalizerTokenFilterFactory extends AbstractTokenFilterFactory
     public IcuNormalizerTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
                                            Settings settings) {
         super(indexSettings, name, settings);
-        Normalizer2 base = Normalizer2.getInstance(getNormalizationResource(settings),
-                getNormalizationName(settings), getNormalizationMode(settings));
+        Normalizer2 base = getNormalizer(settings);
         String unicodeSetFilter = settings.get("unicodeSetFilter");
         this.normalizer = unicodeSetFilter != null ?
                 new FilteredNormalizer2(base, new UnicodeSet(unicodeSetFilter).freeze()) : base;
@@ -42,6 +41,11 @@ public class IcuNormalizerTokenFilterFactory extends AbstractTokenFilterFactory
         return this;
     }
 
+    protected Normalizer2 getNormalizer(Settings settings) {
+        return Normalizer2.getInstance(getNormalizationResource(settings),
+                getNormalizationName(settings), getNormalizationMode(settings));
+    }
+
     protected InputStream getNormalizationResource(Settings settings) {
         return null;
     }
@@ -1,6 +1,7 @@
 package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.NumberFormat;
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -8,20 +9,37 @@ import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 
 import java.io.IOException;
 import java.text.ParsePosition;
+import java.util.regex.Pattern;
 
 /**
  *
  */
 public final class IcuNumberFormatTokenFilter extends TokenFilter {
 
+    private static final Pattern SEPARATORS = Pattern.compile("[\u00AD\u0020]");
+
     private final NumberFormat numberFormat;
 
+    private final CharArrayMap<String> words;
+
+    private final ParsePosition parsePosition = new ParsePosition(0);
+
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
     private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
 
     public IcuNumberFormatTokenFilter(TokenStream input, NumberFormat numberFormat) {
+        this(input, numberFormat, null);
+    }
+
+    /**
+     * @param input the input token stream
+     * @param numberFormat the number format, it must not be used concurrently
+     * @param words a table of known number words to their formatted form, or null
+     */
+    public IcuNumberFormatTokenFilter(TokenStream input, NumberFormat numberFormat, CharArrayMap<String> words) {
         super(input);
         this.numberFormat = numberFormat;
+        this.words = words;
     }
 
     @Override
@@ -29,13 +47,16 @@ public final class IcuNumberFormatTokenFilter extends TokenFilter {
         if (!input.incrementToken()) {
             return false;
         } else {
-            String s = termAtt.toString();
-            ParsePosition parsePosition = new ParsePosition(0);
-            Number result = numberFormat.parse(s, parsePosition);
-            if (parsePosition.getIndex() > 0) {
-                // zehn-tausend -> zehntausend
-                // one hundred thousand -> onehundredthousand
-                s = numberFormat.format(result).replaceAll("[\u00AD\u0020]", "");
+            String s = words != null ? words.get(termAtt.buffer(), 0, termAtt.length()) : null;
+            if (s == null) {
+                s = termAtt.toString();
+                parsePosition.setIndex(0);
+                Number result = numberFormat.parse(s, parsePosition);
+                if (parsePosition.getIndex() > 0) {
+                    // zehn-tausend -> zehntausend
+                    // one hundred thousand -> onehundredthousand
+                    s = compact(numberFormat.format(result));
+                }
             }
             termAtt.setEmpty().append(s);
             typeAtt.setType("<ALPHANUM>");
@@ -43,6 +64,10 @@ public final class IcuNumberFormatTokenFilter extends TokenFilter {
         }
     }
 
+    static String compact(String s) {
+        return SEPARATORS.matcher(s).replaceAll("");
+    }
+
     @Override
     public boolean equals(Object object) {
         return object instanceof IcuNumberFormatTokenFilter &&
@@ -2,17 +2,29 @@ package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.RuleBasedNumberFormat;
 import com.ibm.icu.util.ULocale;
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.CloseableThreadLocal;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 
 /**
+ * Factory for the ICU number format token filter.
  *
+ * Rule based number formats are expensive to build, and a clone shares its rule sets with
+ * the original, so it is not safe to use a clone concurrently. Therefore, each thread
+ * builds its own number format once and reuses it for all token streams it creates.
+ *
+ * In lenient mode, the words for the numbers below <code>vocabulary_size</code> and for
+ * the round numbers are formatted once into a word table. Tokens found in the table are
+ * replaced without parsing, only the other tokens go through the slow lenient parser.
  */
 public class IcuNumberFormatTokenFilterFactory extends AbstractTokenFilterFactory {
 
+    private static final long MAX_ROUND_NUMBER = 1000000000L;
+
     private final ULocale locale;
 
     private final int format;
@@ -21,6 +33,16 @@ public class IcuNumberFormatTokenFilterFactory extends AbstractTokenFilterFactor
 
     private final boolean grouping;
 
+    private final CharArrayMap<String> words;
+
+    private final CloseableThreadLocal<RuleBasedNumberFormat> numberFormats =
+            new CloseableThreadLocal<RuleBasedNumberFormat>() {
+                @Override
+                protected RuleBasedNumberFormat initialValue() {
+                    return newNumberFormat();
+                }
+            };
+
     public IcuNumberFormatTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
                                              Settings settings) {
         super(indexSettings, name, settings);
@@ -47,14 +69,39 @@ public class IcuNumberFormatTokenFilterFactory extends AbstractTokenFilterFactor
         // RBNF parsing is incredibly slow when lenient is enabled but the only method to parse compound number words
         this.lenient = settings.getAsBoolean("lenient", true);
         this.grouping = settings.getAsBoolean("grouping", true);
+        int vocabularySize = settings.getAsInt("vocabulary_size", 1000);
+        this.words = lenient && vocabularySize > 0 ? createWords(vocabularySize) : null;
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        // create a new number format instance for each token stream
+        return new IcuNumberFormatTokenFilter(tokenStream, numberFormats.get(), words);
+    }
+
+    private RuleBasedNumberFormat newNumberFormat() {
         RuleBasedNumberFormat ruleBasedNumberFormat = new RuleBasedNumberFormat(locale, format);
         ruleBasedNumberFormat.setLenientParseMode(lenient);
         ruleBasedNumberFormat.setGroupingUsed(grouping);
-        return new IcuNumberFormatTokenFilter(tokenStream, ruleBasedNumberFormat);
+        return ruleBasedNumberFormat;
+    }
+
+    private CharArrayMap<String> createWords(int vocabularySize) {
+        RuleBasedNumberFormat ruleBasedNumberFormat = newNumberFormat();
+        CharArrayMap<String> map = new CharArrayMap<>(vocabularySize + 100, true);
+        for (long n = 0; n < vocabularySize; n++) {
+            addWord(map, ruleBasedNumberFormat.format(n));
+        }
+        for (long p = 10; p <= MAX_ROUND_NUMBER; p *= 10) {
+            for (int d = 1; d < 10; d++) {
+                addWord(map, ruleBasedNumberFormat.format(d * p));
+            }
+        }
+        return CharArrayMap.unmodifiableMap(map);
+    }
+
+    private static void addWord(CharArrayMap<String> map, String word) {
+        String s = IcuNumberFormatTokenFilter.compact(word);
+        map.put(word, s);
+        map.put(s, s);
     }
 }
@@ -0,0 +1,150 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.util.AttributeSource;
+import org.xbib.elasticsearch.index.analysis.icu.tokenattributes.ScriptAttribute;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A token filter that routes each token through a filter chain for the script of the token,
+ * as recorded in the {@link ScriptAttribute} by the ICU tokenizer. Tokens of scripts without
+ * a chain go through the default chain, or pass unchanged if there is no default chain.
+ *
+ * The chains share the attributes of this filter, and see one token at a time, so filters
+ * that combine tokens, like pairs or phrases, do not work across tokens in a chain. Chains
+ * may emit more than one token for a token, or remove it. Each chain is reset for a token,
+ * and ended when it has no more tokens for it.
+ */
+public final class IcuScriptRouterTokenFilter extends TokenFilter {
+
+    private final ScriptAttribute scriptAtt = addAttribute(ScriptAttribute.class);
+
+    private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+    private final SingleTokenSource source;
+
+    private final TokenStream[] chains;
+
+    private final TokenStream defaultChain;
+
+    private TokenStream current;
+
+    private int skippedPositions;
+
+    /**
+     * @param input the input token stream
+     * @param chains functions building the filter chain for a script code
+     * @param defaultChain function building the filter chain for the other scripts, or null
+     */
+    public IcuScriptRouterTokenFilter(TokenStream input, Map<Integer, Function<TokenStream, TokenStream>> chains,
+                                      Function<TokenStream, TokenStream> defaultChain) {
+        super(input);
+        this.source = new SingleTokenSource(this);
+        int size = 0;
+        for (Integer code : chains.keySet()) {
+            size = Math.max(size, code + 1);
+        }
+        this.chains = new TokenStream[size];
+        for (Map.Entry<Integer, Function<TokenStream, TokenStream>> entry : chains.entrySet()) {
+            this.chains[entry.getKey()] = entry.getValue().apply(source);
+        }
+        this.defaultChain = defaultChain != null ? defaultChain.apply(source) : null;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (true) {
+            if (current != null) {
+                if (current.incrementToken()) {
+                    addSkippedPositions();
+                    return true;
+                }
+                current.end();
+                current = null;
+            }
+            if (!input.incrementToken()) {
+                return false;
+            }
+            int code = scriptAtt.getCode();
+            TokenStream chain = code >= 0 && code < chains.length && chains[code] != null ?
+                    chains[code] : defaultChain;
+            if (chain == null) {
+                addSkippedPositions();
+                return true;
+            }
+            int posInc = posIncAtt.getPositionIncrement();
+            source.pending = true;
+            chain.reset();
+            if (chain.incrementToken()) {
+                current = chain;
+                addSkippedPositions();
+                return true;
+            }
+            // the chain removed the token
+            chain.end();
+            skippedPositions += posInc;
+        }
+    }
+
+    private void addSkippedPositions() {
+        if (skippedPositions > 0) {
+            posIncAtt.setPositionIncrement(posIncAtt.getPositionIncrement() + skippedPositions);
+            skippedPositions = 0;
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        posIncAtt.setPositionIncrement(posIncAtt.getPositionIncrement() + skippedPositions);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (current != null) {
+            // the previous stream was not consumed to its end
+            current.end();
+            current = null;
+        }
+        super.reset();
+        skippedPositions = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (TokenStream chain : chains) {
+            if (chain != null) {
+                chain.close();
+            }
+        }
+        if (defaultChain != null) {
+            defaultChain.close();
+        }
+        super.close();
+    }
+
+    /**
+     * The input of the chains. It shares the attributes of the router, and emits the current
+     * token of the router once.
+     */
+    private static final class SingleTokenSource extends TokenStream {
+
+        private boolean pending;
+
+        SingleTokenSource(AttributeSource attributeSource) {
+            super(attributeSource);
+        }
+
+        @Override
+        public boolean incrementToken() {
+            boolean b = pending;
+            pending = false;
+            return b;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import com.ibm.icu.lang.UScript;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.indices.analysis.AnalysisModule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Creates an {@link IcuScriptRouterTokenFilter} from the <code>routes</code> setting, which maps
+ * script names or codes, like <code>Latn</code> or <code>Cyrillic</code>, to a list of token filter
+ * names. The special route <code>default</code> is used for the other scripts.
+ *
+ * The token filters must be defined in the index analysis settings, and their types must be
+ * token filters of this plugin.
+ */
+public class IcuScriptRouterTokenFilterFactory extends AbstractTokenFilterFactory {
+
+    public static final String TYPE = "icu_script_router";
+
+    private static final String DEFAULT_ROUTE = "default";
+
+    private final Map<Integer, Function<TokenStream, TokenStream>> chains;
+
+    private final Function<TokenStream, TokenStream> defaultChain;
+
+    public IcuScriptRouterTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
+                                             Settings settings,
+                                             Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> providers) {
+        super(indexSettings, name, settings);
+        this.chains = new HashMap<>();
+        Function<TokenStream, TokenStream> defaultChain = null;
+        Settings routes = settings.getByPrefix("routes.");
+        for (String route : routes.names()) {
+            Function<TokenStream, TokenStream> chain =
+                    createChain(indexSettings, environment, providers, settings.getAsArray("routes." + route));
+            if (DEFAULT_ROUTE.equals(route)) {
+                defaultChain = chain;
+            } else {
+                int code = UScript.getCodeFromName(route);
+                if (code == UScript.INVALID_CODE) {
+                    throw new ElasticsearchException("unknown script in route: " + route);
+                }
+                chains.put(code, chain);
+            }
+        }
+        this.defaultChain = defaultChain;
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new IcuScriptRouterTokenFilter(tokenStream, chains, defaultChain);
+    }
+
+    private static Function<TokenStream, TokenStream> createChain(IndexSettings indexSettings, Environment environment,
+            Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> providers, String[] filterNames) {
+        List<TokenFilterFactory> factories = new ArrayList<>();
+        for (String filterName : filterNames) {
+            Settings filterSettings = indexSettings.getSettings().getAsSettings("index.analysis.filter." + filterName);
+            String type = filterSettings.get("type");
+            if (type == null) {
+                throw new ElasticsearchException("token filter [" + filterName + "] not defined");
+            }
+            AnalysisModule.AnalysisProvider<TokenFilterFactory> provider = providers.get(type);
+            if (provider == null || TYPE.equals(type)) {
+                throw new ElasticsearchException("token filter type [" + type + "] can not be routed");
+            }
+            try {
+                factories.add(provider.get(indexSettings, environment, filterName, filterSettings));
+            } catch (IOException e) {
+                throw new ElasticsearchException(e);
+            }
+        }
+        return tokenStream -> {
+            TokenStream stream = tokenStream;
+            for (TokenFilterFactory factory : factories) {
+                stream = factory.create(stream);
+            }
+            return stream;
+        };
+    }
+}
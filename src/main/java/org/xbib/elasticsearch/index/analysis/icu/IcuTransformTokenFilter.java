@@ -3,6 +3,7 @@ package org.xbib.elasticsearch.index.analysis.icu;
 import com.ibm.icu.text.Replaceable;
 import com.ibm.icu.text.Transliterator;
 import com.ibm.icu.text.UTF16;
+import com.ibm.icu.text.UnicodeSet;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -39,6 +40,8 @@ public final class IcuTransformTokenFilter extends TokenFilter {
 
     private final Transliterator transliterator;
 
+    private final UnicodeSet sourceSet;
+
     private final Transliterator.Position position = new Transliterator.Position();
 
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
@@ -52,13 +55,30 @@ public final class IcuTransformTokenFilter extends TokenFilter {
      * @param transliterator Transliterator to transform the text.
      */
     public IcuTransformTokenFilter(TokenStream input, Transliterator transliterator) {
+        this(input, transliterator, null);
+    }
+
+    /**
+     * Create a new IcuTransformFilter that transforms text on the given stream, and leaves
+     * terms without characters of the source set of the transliterator alone.
+     *
+     * @param input {@link TokenStream} to filter.
+     * @param transliterator Transliterator to transform the text, it must not be used concurrently.
+     * @param sourceSet the frozen source set of the transliterator, or null
+     */
+    public IcuTransformTokenFilter(TokenStream input, Transliterator transliterator, UnicodeSet sourceSet) {
         super(input);
         this.transliterator = transliterator;
+        this.sourceSet = sourceSet;
     }
 
     @Override
     public boolean incrementToken() throws IOException {
         if (input.incrementToken()) {
+            if (sourceSet != null &&
+                    sourceSet.span(termAtt, UnicodeSet.SpanCondition.NOT_CONTAINED) == termAtt.length()) {
+                return true;
+            }
             replaceableAttribute.setText(termAtt);
             int length = termAtt.length();
             position.start = 0;
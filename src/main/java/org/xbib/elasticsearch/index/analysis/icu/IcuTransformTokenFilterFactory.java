@@ -3,25 +3,48 @@ package org.xbib.elasticsearch.index.analysis.icu;
 import com.ibm.icu.text.Transliterator;
 import com.ibm.icu.text.UnicodeSet;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.CloseableThreadLocal;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 
 /**
+ * Factory for the ICU transform token filter.
  *
+ * Transliterators keep state while they transliterate, and rule based transliterators
+ * synchronize on their compiled rules, so a single transliterator shared by concurrent
+ * token streams would serialize transliteration. Therefore, the transliterator given by the
+ * settings is only a template. Each thread creates its own transliterator once, from the
+ * registry id or from the rules of the settings, with the filter of the template, and reuses
+ * it for all token streams it creates.
  */
 public class IcuTransformTokenFilterFactory extends AbstractTokenFilterFactory {
 
     private final Transliterator transliterator;
 
+    private final String id;
+
+    private final String rules;
+
+    private final int dir;
+
+    private final UnicodeSet sourceSet;
+
+    private final CloseableThreadLocal<Transliterator> transliterators = new CloseableThreadLocal<Transliterator>() {
+        @Override
+        protected Transliterator initialValue() {
+            return newTransliterator();
+        }
+    };
+
     public IcuTransformTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
                                           Settings settings) {
         super(indexSettings, name, settings);
-        String id = settings.get("id", "Null");
+        this.id = settings.get("id", "Null");
         String direction = settings.get("dir", "forward");
-        int dir = "forward".equals(direction) ? Transliterator.FORWARD : Transliterator.REVERSE;
-        String rules = settings.get("rules");
+        this.dir = "forward".equals(direction) ? Transliterator.FORWARD : Transliterator.REVERSE;
+        this.rules = settings.get("rules");
         this.transliterator = rules != null ?
                 Transliterator.createFromRules(id, rules, dir) :
                 Transliterator.getInstance(id, dir);
@@ -29,10 +52,28 @@ public class IcuTransformTokenFilterFactory extends AbstractTokenFilterFactory {
         if (unicodeSetFilter != null) {
             transliterator.setFilter(new UnicodeSet(unicodeSetFilter).freeze());
         }
+        this.sourceSet = transliterator.getSourceSet().freeze();
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        return new IcuTransformTokenFilter(tokenStream, transliterator);
+        return new IcuTransformTokenFilter(tokenStream, transliterator(), sourceSet);
+    }
+
+    /**
+     * Return the transliterator of the current thread.
+     *
+     * @return the transliterator
+     */
+    Transliterator transliterator() {
+        return transliterators.get();
+    }
+
+    private Transliterator newTransliterator() {
+        Transliterator t = rules != null ?
+                Transliterator.createFromRules(id, rules, dir) :
+                Transliterator.getInstance(id, dir);
+        t.setFilter(transliterator.getFilter());
+        return t;
     }
 }
@@ -0,0 +1,78 @@
+package org.xbib.elasticsearch.index.analysis.icu.segmentation;
+
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UProperty;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A per-thread pool of break iterators, by tokenizer configuration and script.
+ *
+ * Break iterators are checked out by a {@link CompositeBreakIterator} while a tokenizer is
+ * in use, and returned when the tokenizer is closed, so tokenizers do not each hold a clone
+ * for every script they have seen. At most {@link #MAX_IDLE} idle break iterators are kept for
+ * a configuration and script in a thread. Configurations are weakly referenced, so the
+ * break iterators of configurations that are no longer in use can be collected.
+ */
+final class BreakIteratorPool {
+
+    static final int MAX_IDLE = 2;
+
+    /**
+     * The size of tables indexed by script code, the highest script code plus one.
+     */
+    static final int SCRIPTS = UCharacter.getIntPropertyMaxValue(UProperty.SCRIPT) + 1;
+
+    private static final char[] EMPTY = new char[0];
+
+    private static final ThreadLocal<Map<IcuTokenizerConfig, Deque<BreakIteratorWrapper>[]>> pools =
+            ThreadLocal.withInitial(WeakHashMap::new);
+
+    private BreakIteratorPool() {
+    }
+
+    /**
+     * Check out a break iterator.
+     *
+     * @param config the tokenizer configuration
+     * @param script the script code
+     * @return an idle break iterator of this thread, or a new break iterator
+     */
+    static BreakIteratorWrapper acquire(IcuTokenizerConfig config, int script) {
+        Deque<BreakIteratorWrapper>[] idle = pools.get().get(config);
+        if (idle != null && idle[script] != null) {
+            BreakIteratorWrapper wrapper = idle[script].pollFirst();
+            if (wrapper != null) {
+                return wrapper;
+            }
+        }
+        return BreakIteratorWrapper.wrap(config.getBreakIterator(script));
+    }
+
+    /**
+     * Return a break iterator to the pool of this thread. The break iterator must not be used afterwards.
+     *
+     * @param config the tokenizer configuration the break iterator was checked out for
+     * @param script the script code the break iterator was checked out for
+     * @param wrapper the break iterator
+     */
+    static void release(IcuTokenizerConfig config, int script, BreakIteratorWrapper wrapper) {
+        // do not hold on to the text of the tokenizer
+        wrapper.setText(EMPTY, 0, 0);
+        Deque<BreakIteratorWrapper>[] idle = pools.get().computeIfAbsent(config, c -> newPool());
+        if (idle[script] == null) {
+            idle[script] = new ArrayDeque<>(MAX_IDLE);
+        }
+        if (idle[script].size() < MAX_IDLE) {
+            idle[script].addFirst(wrapper);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Deque<BreakIteratorWrapper>[] newPool() {
+        return new Deque[SCRIPTS];
+    }
+}
@@ -1,7 +1,5 @@
 package org.xbib.elasticsearch.index.analysis.icu.segmentation;
 
-import com.ibm.icu.lang.UCharacter;
-import com.ibm.icu.lang.UProperty;
 import com.ibm.icu.lang.UScript;
 import com.ibm.icu.text.BreakIterator;
 
@@ -15,13 +13,15 @@ import com.ibm.icu.text.BreakIterator;
  * This break iterator also allows you to retrieve the ISO 15924 script code
  * associated with a piece of text.
  * See also UAX #29, UTR #24
+ * The break iterators for the scripts are checked out from the {@link BreakIteratorPool}
+ * when they are first needed, and must be returned by {@link #release()}.
  */
 final class CompositeBreakIterator {
 
     private final IcuTokenizerConfig config;
 
     private final BreakIteratorWrapper[] wordBreakers =
-            new BreakIteratorWrapper[UCharacter.getIntPropertyMaxValue(UProperty.SCRIPT)];
+            new BreakIteratorWrapper[BreakIteratorPool.SCRIPTS];
 
     private final ScriptIterator scriptIterator;
 
@@ -103,9 +103,24 @@ final class CompositeBreakIterator {
         }
     }
 
+    /**
+     * Return the break iterators to the pool of the current thread. The iterator can be used again
+     * after the next {@link #setText(char[], int, int)}.
+     */
+    void release() {
+        for (int i = 0; i < wordBreakers.length; i++) {
+            if (wordBreakers[i] != null) {
+                BreakIteratorPool.release(config, i, wordBreakers[i]);
+                wordBreakers[i] = null;
+            }
+        }
+        rbbi = null;
+        text = null;
+    }
+
     private BreakIteratorWrapper getBreakIterator(int scriptCode) {
         if (wordBreakers[scriptCode] == null) {
-            wordBreakers[scriptCode] = BreakIteratorWrapper.wrap(config.getBreakIterator(scriptCode));
+            wordBreakers[scriptCode] = BreakIteratorPool.acquire(config, scriptCode);
         }
         return wordBreakers[scriptCode];
     }
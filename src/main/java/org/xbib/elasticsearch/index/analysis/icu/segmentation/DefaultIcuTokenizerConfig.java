@@ -19,6 +19,8 @@ import java.io.UncheckedIOException;
  * <ul>
  * <li>Thai, Lao, and CJK text is broken into words with a dictionary.
  * <li>Myanmar, and Khmer text is broken into syllables based on custom BreakIterator rules.
+ * <li>Optionally, Han, Hiragana, and Katakana text is broken into overlapping bigrams
+ * without a dictionary.
  * </ul>
  */
 public class DefaultIcuTokenizerConfig implements IcuTokenizerConfig {
@@ -62,6 +64,7 @@ public class DefaultIcuTokenizerConfig implements IcuTokenizerConfig {
 
     private final boolean cjkAsWords;
     private final boolean myanmarAsWords;
+    private final boolean cjkBigrams;
 
     /**
      * Creates a new config. The first
@@ -75,8 +78,23 @@ public class DefaultIcuTokenizerConfig implements IcuTokenizerConfig {
      *                       otherwise it will be tokenized as syllables.
      */
     public DefaultIcuTokenizerConfig(boolean cjkAsWords, boolean myanmarAsWords) {
-        this.cjkAsWords = cjkAsWords;
+        this(cjkAsWords, myanmarAsWords, false);
+    }
+
+    /**
+     * Creates a new config.
+     *
+     * @param cjkAsWords true if cjk text should undergo dictionary-based segmentation,
+     *                   ignored if cjk text is broken into bigrams.
+     * @param myanmarAsWords true if Myanmar text should undergo dictionary-based segmentation,
+     *                       otherwise it will be tokenized as syllables.
+     * @param cjkBigrams true if Han+Hiragana+Katakana text should be broken into overlapping bigrams
+     *                   instead of dictionary words.
+     */
+    public DefaultIcuTokenizerConfig(boolean cjkAsWords, boolean myanmarAsWords, boolean cjkBigrams) {
+        this.cjkAsWords = cjkAsWords && !cjkBigrams;
         this.myanmarAsWords = myanmarAsWords;
+        this.cjkBigrams = cjkBigrams;
     }
 
     private static RuleBasedBreakIterator readBreakIterator(ClassLoader classLoader, String resourceName) {
@@ -92,6 +110,11 @@ public class DefaultIcuTokenizerConfig implements IcuTokenizerConfig {
         return cjkAsWords;
     }
 
+    @Override
+    public boolean cjkBigrams() {
+        return cjkBigrams;
+    }
+
     @Override
     public BreakIterator getBreakIterator(int script) {
         switch (script) {
@@ -123,4 +146,29 @@ public class DefaultIcuTokenizerConfig implements IcuTokenizerConfig {
                 return "<OTHER>";
         }
     }
+
+    /**
+     * Default configurations with the same settings are equal, so they share pooled
+     * break iterators. Instances of subclasses, which may tailor break iterators, are
+     * only equal to themselves.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        return object != null && getClass() == DefaultIcuTokenizerConfig.class &&
+                object.getClass() == DefaultIcuTokenizerConfig.class &&
+                cjkAsWords == ((DefaultIcuTokenizerConfig) object).cjkAsWords &&
+                myanmarAsWords == ((DefaultIcuTokenizerConfig) object).myanmarAsWords &&
+                cjkBigrams == ((DefaultIcuTokenizerConfig) object).cjkBigrams;
+    }
+
+    @Override
+    public int hashCode() {
+        if (getClass() != DefaultIcuTokenizerConfig.class) {
+            return System.identityHashCode(this);
+        }
+        return (cjkBigrams ? 4 : 0) + (cjkAsWords ? 2 : 0) + (myanmarAsWords ? 1 : 0);
+    }
 }
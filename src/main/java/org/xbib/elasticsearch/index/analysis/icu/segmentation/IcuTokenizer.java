@@ -1,29 +1,39 @@
 package org.xbib.elasticsearch.index.analysis.icu.segmentation;
 
 import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UScript;
 import com.ibm.icu.text.BreakIterator;
+import com.ibm.icu.text.RuleBasedBreakIterator;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.cjk.CJKBigramFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.AttributeFactory;
 import org.xbib.elasticsearch.index.analysis.icu.tokenattributes.ScriptAttribute;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
 
 /**
  * Breaks text into words according to UAX #29: Unicode Text Segmentation
  * http://www.unicode.org/reports/tr29/.
  * Words are broken across script boundaries, then segmented according to
  * the BreakIterator and typing provided by the {@link IcuTokenizerConfig}.
- *
+ * The break iterators are taken from a per-thread pool on {@link #reset()},
+ * and given back on {@link #close()}.
+ * If the configuration asks for CJK bigrams, adjacent Han, Hiragana, and Katakana
+ * words are joined to a run, and the run is emitted as overlapping bigrams, like
+ * {@link CJKBigramFilter} does. A run of a single character is emitted as a unigram.
  */
 public final class IcuTokenizer extends Tokenizer {
 
     private static final int IOBUFFER = 4096;
 
-    private final char[] buffer = new char[IOBUFFER];
+    private final int maxBufferSize;
+    private char[] buffer;
     private final CompositeBreakIterator breaker;
     private final IcuTokenizerConfig config;
     private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
@@ -42,6 +52,30 @@ public final class IcuTokenizer extends Tokenizer {
      * Accumulated offset of previous buffers for this reader, for offsetAtt.
      */
     private int offset = 0;
+    /**
+     * The current word of the break iterator, valid while hasWord is true.
+     */
+    private boolean hasWord;
+    private int wordStart;
+    private int wordEnd;
+    private int wordStatus;
+    private int wordScript;
+    /**
+     * The CJK run in the buffer, and the start of the next bigram in the run.
+     */
+    private int runStart;
+    private int runEnd;
+    private int runPos;
+    private int runScript;
+    /**
+     * The last character of a CJK run at the end of the buffer, which may continue after a refill.
+     */
+    private final char[] pending = new char[2];
+    private int pendingLength;
+    private int pendingOffset;
+    private int pendingScript;
+    private boolean pendingSingle;
+    private boolean bridge;
 
     /**
      * Construct a new ICUTokenizer that breaks text into words from the given
@@ -74,8 +108,26 @@ public final class IcuTokenizer extends Tokenizer {
      * @param config  Tailored BreakIterator configuration
      */
     public IcuTokenizer(AttributeFactory factory, IcuTokenizerConfig config) {
+        this(factory, config, IOBUFFER);
+    }
+
+    /**
+     * Construct a new ICUTokenizer that breaks text into words from the given
+     * Reader, using a tailored BreakIterator configuration. The buffer grows
+     * up to the given size if there is no whitespace in the text read so far.
+     *
+     * @param factory AttributeFactory to use
+     * @param config  Tailored BreakIterator configuration
+     * @param maxBufferSize the maximum buffer size, which is also the maximum word length
+     */
+    public IcuTokenizer(AttributeFactory factory, IcuTokenizerConfig config, int maxBufferSize) {
         super(factory);
+        if (maxBufferSize <= 0) {
+            throw new IllegalArgumentException("maxBufferSize must be greater than 0: " + maxBufferSize);
+        }
         this.config = config;
+        this.maxBufferSize = maxBufferSize;
+        this.buffer = new char[Math.min(IOBUFFER, maxBufferSize)];
         breaker = new CompositeBreakIterator(config);
     }
 
@@ -104,7 +156,7 @@ public final class IcuTokenizer extends Tokenizer {
         while (!incrementTokenBuffer()) {
             refill();
             if (length <= 0) {
-                return false;
+                return flushPending();
             }
         }
         return true;
@@ -113,8 +165,16 @@ public final class IcuTokenizer extends Tokenizer {
     @Override
     public void reset() throws IOException {
         super.reset();
+        if (buffer.length > IOBUFFER) {
+            // do not keep a grown buffer for the lifetime of a reused tokenizer
+            buffer = new char[Math.min(IOBUFFER, maxBufferSize)];
+        }
         breaker.setText(buffer, 0, 0);
         length = usableLength = offset = 0;
+        hasWord = false;
+        runStart = runEnd = runPos = 0;
+        pendingLength = 0;
+        bridge = false;
     }
 
   /*
@@ -125,10 +185,17 @@ public final class IcuTokenizer extends Tokenizer {
    * white space character) Any remaining characters represent possible partial
    * words, so are appended to the front of the next chunk.
    * There is the possibility that there are no unambiguous break points within
-   * an entire 4kB chunk of text (binary data). So there is a maximum word limit
-   * of 4kB since it will not try to grow the buffer in this case.
+   * an entire 4kB chunk of text (binary data, long CJK or Thai text). In this case,
+   * the buffer grows and more text is read, up to the maximum buffer size, which
+   * is the maximum word length. Only the newly read text is searched for a break point.
    */
 
+    @Override
+    public void close() throws IOException {
+        super.close();
+        breaker.release();
+    }
+
     @Override
     public void end() throws IOException {
         super.end();
@@ -139,10 +206,11 @@ public final class IcuTokenizer extends Tokenizer {
     /**
      * Returns the last unambiguous break position in the text.
      *
+     * @param from the position from which on the text is searched
      * @return position of character, or -1 if one does not exist
      */
-    private int findSafeEnd() {
-        for (int i = length - 1; i >= 0; i--) {
+    private int findSafeEnd(int from) {
+        for (int i = length - 1; i >= from; i--) {
             if (UCharacter.isWhitespace(buffer[i])) {
                 return i + 1;
             }
@@ -160,28 +228,76 @@ public final class IcuTokenizer extends Tokenizer {
         offset += usableLength;
         int leftover = length - usableLength;
         System.arraycopy(buffer, usableLength, buffer, 0, leftover);
-        int requested = buffer.length - leftover;
-        int returned = read(input, buffer, leftover, requested);
-        length = returned + leftover;
-        if (returned < requested) /* reader has been emptied, process the rest */ {
-            usableLength = length;
-        } else { /* still more data to be read, find a safe-stopping place */
-            usableLength = findSafeEnd();
-            if (usableLength < 0) {
+        length = leftover;
+        // the leftover is the text after the last break position, so it contains no whitespace
+        int from = leftover;
+        while (true) {
+            int requested = buffer.length - length;
+            int returned = read(input, buffer, length, requested);
+            length += returned;
+            if (returned < requested) /* reader has been emptied, process the rest */ {
+                usableLength = length;
+                break;
+            }
+            /* still more data to be read, find a safe-stopping place */
+            usableLength = findSafeEnd(from);
+            if (usableLength >= 0) {
+                break;
+            }
+            if (buffer.length >= maxBufferSize) {
                 usableLength = length; /*
-                                * more than IOBUFFER of text without space,
+                                * more than maxBufferSize of text without space,
                                 * gonna possibly truncate tokens
                                 */
+                break;
             }
+            from = length;
+            buffer = Arrays.copyOf(buffer, Math.min(maxBufferSize,
+                    ArrayUtil.oversize(buffer.length + 1, Character.BYTES)));
         }
         breaker.setText(buffer, 0, Math.max(0, usableLength));
+        bridge = pendingLength > 0;
     }
 
     /*
-     * Return true if there is a token from the buffer, or null if it is
+     * Return true if there is a token from the buffer, or false if it is
      * exhausted.
      */
     private boolean incrementTokenBuffer() {
+        if (bridge) {
+            bridge = false;
+            if (nextBridgeBigram()) {
+                return true;
+            }
+        }
+        if (runPos < runEnd && nextBigram()) {
+            return true;
+        }
+        if (!nextWord()) {
+            return false;
+        }
+        hasWord = false;
+        if (config.cjkBigrams() && isCJK(wordStatus)) {
+            runStart = runPos = wordStart;
+            collectRun();
+            return nextBigram();
+        }
+        termAtt.copyBuffer(buffer, wordStart, wordEnd - wordStart);
+        offsetAtt.setOffset(correctOffset(offset + wordStart), correctOffset(offset + wordEnd));
+        typeAtt.setType(config.getType(wordScript, wordStatus));
+        scriptAtt.setCode(wordScript);
+        return true;
+    }
+
+    /**
+     * Find the next word of the break iterator, if there is no current word.
+     *
+     * @return true if there is a current word
+     */
+    private boolean nextWord() {
+        if (hasWord) {
+            return true;
+        }
         int start = breaker.current();
         if (start == BreakIterator.DONE) {
             return false;
@@ -195,13 +311,120 @@ public final class IcuTokenizer extends Tokenizer {
         if (start == BreakIterator.DONE) {
             return false;
         }
-        termAtt.copyBuffer(buffer, start, end - start);
-        offsetAtt.setOffset(correctOffset(offset + start), correctOffset(offset + end));
-        typeAtt.setType(config.getType(breaker.getScriptCode(), breaker.getRuleStatus()));
-        scriptAtt.setCode(breaker.getScriptCode());
+        hasWord = true;
+        wordStart = start;
+        wordEnd = end;
+        wordStatus = breaker.getRuleStatus();
+        wordScript = breaker.getScriptCode();
         return true;
     }
 
+    /**
+     * Extend the CJK run, starting with the current word, over the adjacent CJK words.
+     */
+    private void collectRun() {
+        runEnd = wordEnd;
+        runScript = wordScript;
+        while (nextWord() && isCJK(wordStatus) && wordStart == runEnd) {
+            hasWord = false;
+            runEnd = wordEnd;
+            if (wordScript != runScript) {
+                runScript = UScript.JAPANESE;
+            }
+        }
+    }
+
+    /**
+     * After a refill, join the pending last character of the previous buffer with the CJK run
+     * at the start of the buffer to a bigram. If the run does not continue, the pending
+     * character is emitted as a unigram if it was a run of its own.
+     *
+     * @return true if a token was emitted
+     */
+    private boolean nextBridgeBigram() {
+        if (config.cjkBigrams() && nextWord() && isCJK(wordStatus) && wordStart == 0) {
+            hasWord = false;
+            int end = Character.charCount(Character.codePointAt(buffer, 0, wordEnd));
+            char[] term = termAtt.resizeBuffer(pendingLength + end);
+            System.arraycopy(pending, 0, term, 0, pendingLength);
+            System.arraycopy(buffer, 0, term, pendingLength, end);
+            termAtt.setLength(pendingLength + end);
+            offsetAtt.setOffset(correctOffset(pendingOffset), correctOffset(offset + end));
+            typeAtt.setType(CJKBigramFilter.DOUBLE_TYPE);
+            scriptAtt.setCode(wordScript == pendingScript ? pendingScript : UScript.JAPANESE);
+            pendingLength = 0;
+            // the run started in the previous buffer, it is never a single character
+            runStart = -1;
+            runPos = 0;
+            collectRun();
+            return true;
+        }
+        return flushPending();
+    }
+
+    /**
+     * Emit the pending character as a unigram if it was a run of its own, and drop it otherwise.
+     *
+     * @return true if a token was emitted
+     */
+    private boolean flushPending() {
+        if (pendingLength == 0) {
+            return false;
+        }
+        int len = pendingLength;
+        pendingLength = 0;
+        if (!pendingSingle) {
+            return false;
+        }
+        termAtt.copyBuffer(pending, 0, len);
+        offsetAtt.setOffset(correctOffset(pendingOffset), correctOffset(pendingOffset + len));
+        typeAtt.setType(CJKBigramFilter.SINGLE_TYPE);
+        scriptAtt.setCode(pendingScript);
+        return true;
+    }
+
+    /**
+     * Emit the next bigram of the CJK run, or the run itself if it is a single character.
+     * If the run reaches the end of a buffer that was cut at its maximum size, its last
+     * character is kept as pending, because the run may continue after the refill.
+     *
+     * @return true if a token was emitted, false if the run is exhausted
+     */
+    private boolean nextBigram() {
+        int first = runPos + Character.charCount(Character.codePointAt(buffer, runPos, runEnd));
+        int end;
+        String type;
+        if (first < runEnd) {
+            end = first + Character.charCount(Character.codePointAt(buffer, first, runEnd));
+            type = CJKBigramFilter.DOUBLE_TYPE;
+        } else if (runEnd == usableLength && usableLength == length) {
+            pendingLength = runEnd - runPos;
+            System.arraycopy(buffer, runPos, pending, 0, pendingLength);
+            pendingOffset = offset + runPos;
+            pendingScript = runScript;
+            pendingSingle = runPos == runStart;
+            runPos = runEnd;
+            return false;
+        } else if (runPos == runStart) {
+            end = first;
+            type = CJKBigramFilter.SINGLE_TYPE;
+        } else {
+            runPos = runEnd;
+            return false;
+        }
+        termAtt.copyBuffer(buffer, runPos, end - runPos);
+        offsetAtt.setOffset(correctOffset(offset + runPos), correctOffset(offset + end));
+        typeAtt.setType(type);
+        scriptAtt.setCode(runScript);
+        runPos = first;
+        return true;
+    }
+
+    private static boolean isCJK(int ruleStatus) {
+        return (ruleStatus >= RuleBasedBreakIterator.WORD_KANA && ruleStatus < RuleBasedBreakIterator.WORD_KANA_LIMIT) ||
+                (ruleStatus >= RuleBasedBreakIterator.WORD_IDEO && ruleStatus < RuleBasedBreakIterator.WORD_IDEO_LIMIT);
+    }
+
     @Override
     public boolean equals(Object object) {
         return object instanceof IcuTokenizer &&
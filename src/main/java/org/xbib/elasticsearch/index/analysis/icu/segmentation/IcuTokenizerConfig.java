@@ -30,4 +30,11 @@ public interface IcuTokenizerConfig {
      * @return true if Han, Hiragana, and Katakana scripts should all be returned as Japanese
      */
     boolean combineCJ();
+
+    /**
+     * @return true if runs of Han, Hiragana, and Katakana words should be emitted as overlapping bigrams
+     */
+    default boolean cjkBigrams() {
+        return false;
+    }
 }
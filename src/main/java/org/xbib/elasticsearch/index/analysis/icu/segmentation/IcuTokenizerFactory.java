@@ -6,30 +6,49 @@ import com.ibm.icu.text.BreakIterator;
 import com.ibm.icu.text.RuleBasedBreakIterator;
 import org.apache.lucene.analysis.Tokenizer;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.hash.MessageDigests;
+import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * ICU-based tokenizer, optionally using ICU rbbi rules files.
+ * ICU-based tokenizer, optionally using ICU rbbi rules files, in source or binary form.
  */
 public class IcuTokenizerFactory extends AbstractTokenizerFactory {
 
+    /**
+     * Compiled break iterators of rule files, by rule type and SHA-256 hash of the rule file content.
+     */
+    private static final Map<String, BreakIterator> breakIterators = new ConcurrentHashMap<>();
+
     protected final IcuTokenizerConfig config;
 
+    private final int maxBufferSize;
+
     public IcuTokenizerFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
         super(indexSettings, name, settings);
         boolean cjkAsWords = settings.getAsBoolean("cjk_as_words", true);
         boolean myanmarAsWords = settings.getAsBoolean("myanmar_as_words", true);
+        boolean cjkBigrams = settings.getAsBoolean("cjk_bigrams", false);
+        this.maxBufferSize = settings.getAsInt("max_buffer_size", 4096);
+        if (maxBufferSize <= 0) {
+            throw new ElasticsearchException("max_buffer_size must be greater than 0: " + maxBufferSize);
+        }
         Map<Integer, String> tailored = new HashMap<>();
         String[] scriptAndResourcePaths = settings.getAsArray("rulefiles");
         if (scriptAndResourcePaths != null) {
@@ -42,33 +61,13 @@ public class IcuTokenizerFactory extends AbstractTokenizerFactory {
             }
         }
         if (tailored.isEmpty()) {
-            this.config = new DefaultIcuTokenizerConfig(cjkAsWords, myanmarAsWords);
+            this.config = new DefaultIcuTokenizerConfig(cjkAsWords, myanmarAsWords, cjkBigrams);
         } else {
-            final BreakIterator[] breakers = new BreakIterator[UCharacter.getIntPropertyMaxValue(UProperty.SCRIPT)];
+            final BreakIterator[] breakers = new BreakIterator[BreakIteratorPool.SCRIPTS];
             for (Map.Entry<Integer, String> entry : tailored.entrySet()) {
-                int code = entry.getKey();
-                String resourcePath = entry.getValue();
-                StringBuilder rules = new StringBuilder();
-                String line;
-                try {
-                    InputStream rulesStream = getClass().getResourceAsStream("/" + resourcePath);
-                    if (rulesStream == null) {
-                        throw new ElasticsearchException("rules stream not found: " + resourcePath);
-                    }
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(rulesStream, StandardCharsets.UTF_8));
-                    while ((line = reader.readLine()) != null) {
-                        if (!line.startsWith("#")) {
-                            rules.append(line);
-                        }
-                        rules.append('\n');
-                    }
-                    reader.close();
-                } catch (IOException e) {
-                    logger.error("unable to parse rules", e);
-                }
-                breakers[code] = new RuleBasedBreakIterator(rules.toString());
+                breakers[entry.getKey()] = getBreakIterator(environment, entry.getValue());
             }
-            this.config = new DefaultIcuTokenizerConfig(cjkAsWords, myanmarAsWords) {
+            this.config = new DefaultIcuTokenizerConfig(cjkAsWords, myanmarAsWords, cjkBigrams) {
 
                 @Override
                 public BreakIterator getBreakIterator(int script) {
@@ -82,8 +81,69 @@ public class IcuTokenizerFactory extends AbstractTokenizerFactory {
         }
     }
 
+    /**
+     * Get the break iterator for a rule file. The rule file is looked up in the configuration
+     * directory first, then on the class path. Rule files ending with <code>.brk</code> contain
+     * binary rules, as written by {@link org.xbib.elasticsearch.index.analysis.icu.tools.RBBIRuleCompiler},
+     * other rule files contain source rules. Break iterators are compiled only once per node
+     * for the same rules, and are shared by all indices.
+     *
+     * @param environment the environment, or null
+     * @param resourcePath the path of the rule file
+     * @return a break iterator for use as a template, it must be cloned before use
+     */
+    private BreakIterator getBreakIterator(Environment environment, String resourcePath) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            Streams.copy(openRules(environment, resourcePath), outputStream);
+        } catch (IOException e) {
+            throw new ElasticsearchException("unable to read rules: " + resourcePath, e);
+        }
+        byte[] bytes = outputStream.toByteArray();
+        boolean compiled = resourcePath.endsWith(".brk");
+        String key = (compiled ? "brk:" : "rbbi:") + MessageDigests.toHexString(MessageDigests.sha256().digest(bytes));
+        return breakIterators.computeIfAbsent(key, k -> {
+            try {
+                return compiled ?
+                        RuleBasedBreakIterator.getInstanceFromCompiledRules(new ByteArrayInputStream(bytes)) :
+                        new RuleBasedBreakIterator(getRules(bytes));
+            } catch (IOException e) {
+                throw new ElasticsearchException("unable to load compiled rules: " + resourcePath, e);
+            }
+        });
+    }
+
+    private InputStream openRules(Environment environment, String resourcePath) throws IOException {
+        if (environment != null) {
+            Path path = environment.configFile().resolve(resourcePath);
+            if (Files.isRegularFile(path)) {
+                return Files.newInputStream(path);
+            }
+        }
+        InputStream rulesStream = getClass().getResourceAsStream("/" + resourcePath);
+        if (rulesStream == null) {
+            throw new ElasticsearchException("rules stream not found: " + resourcePath);
+        }
+        return rulesStream;
+    }
+
+    private static String getRules(byte[] bytes) throws IOException {
+        StringBuilder rules = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    rules.append(line);
+                }
+                rules.append('\n');
+            }
+        }
+        return rules.toString();
+    }
+
     @Override
     public Tokenizer create() {
-        return new IcuTokenizer(config);
+        return new IcuTokenizer(Tokenizer.DEFAULT_TOKEN_ATTRIBUTE_FACTORY, config, maxBufferSize);
     }
 }
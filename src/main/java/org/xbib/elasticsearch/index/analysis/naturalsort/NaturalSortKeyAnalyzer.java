@@ -1,10 +1,9 @@
 package org.xbib.elasticsearch.index.analysis.naturalsort;
 
+import com.ibm.icu.text.Collator;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
 
-import java.text.Collator;
-
 /**
  *
  */
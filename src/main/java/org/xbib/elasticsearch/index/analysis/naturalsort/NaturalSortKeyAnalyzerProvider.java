@@ -1,14 +1,13 @@
 package org.xbib.elasticsearch.index.analysis.naturalsort;
 
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractIndexAnalyzerProvider;
 
-import java.text.Collator;
-import java.util.Locale;
-
 /**
  *
  */
@@ -32,7 +31,7 @@ public class NaturalSortKeyAnalyzerProvider extends AbstractIndexAnalyzerProvide
     }
 
     protected static Collator createCollator(Settings settings) {
-        return Collator.getInstance(new Locale(settings.get("locale", Locale.getDefault().toString())));
+        return Collator.getInstance(new ULocale(settings.get("locale", ULocale.getDefault().toString()))).freeze();
     }
 
     @Override
@@ -1,10 +1,9 @@
 package org.xbib.elasticsearch.index.analysis.naturalsort;
 
+import com.ibm.icu.text.Collator;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.util.AttributeFactory;
 
-import java.text.Collator;
-
 /**
  *
  */
@@ -1,57 +1,98 @@
 package org.xbib.elasticsearch.index.analysis.naturalsort;
 
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.text.RawCollationKey;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttributeImpl;
 import org.apache.lucene.util.BytesRef;
 
-import java.text.Collator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
+ * Encodes the term text as a collation key for natural sorting. Each number in the text,
+ * an optional sign followed by the digits 0-9, is prefixed with the count of its digits,
+ * zero-padded to a minimum width, so numbers with more digits sort after numbers with less digits.
+ * Only the first numbers of the text, up to a maximum count, are prefixed.
  *
+ * The natural form of the text and the collation key are built in reusable buffers,
+ * by a collator that is owned by this attribute.
  */
 public class NaturalSortKeyAttributeImpl extends CharTermAttributeImpl {
 
-    private static final Pattern numberPattern = Pattern.compile("(\\+|\\-)?([0-9]+)");
-
-    private final Collator collator;
+    private Collator collator;
 
     private final int digits;
 
     private final int maxTokens;
 
+    private StringBuilder natural = new StringBuilder();
+
+    private RawCollationKey key = new RawCollationKey();
+
     public NaturalSortKeyAttributeImpl(Collator collator, int digits, int maxTokens) {
-        this.collator = collator;
+        // clone the collator: see http://userguide.icu-project.org/collation/architecture
+        this.collator = collator.cloneAsThawed();
         this.digits = digits;
         this.maxTokens = maxTokens;
     }
 
     @Override
     public BytesRef getBytesRef() {
-        byte[] collationKey = collator.getCollationKey(natural(toString())).toByteArray();
+        natural(buffer(), length());
+        collator.getRawCollationKey(natural.toString(), key);
         final BytesRef ref = this.builder.get();
-        ref.bytes = collationKey;
+        ref.bytes = key.bytes;
         ref.offset = 0;
-        ref.length = collationKey.length;
+        ref.length = key.size;
         return ref;
     }
 
-    private String natural(String s) {
-        StringBuffer sb = new StringBuffer();
-        Matcher m = numberPattern.matcher(s);
+    @Override
+    public NaturalSortKeyAttributeImpl clone() {
+        NaturalSortKeyAttributeImpl clone = (NaturalSortKeyAttributeImpl) super.clone();
+        // the buffers and the thawed collator are mutable state that must not be shared with the clone
+        clone.collator = collator.cloneAsThawed();
+        clone.natural = new StringBuilder();
+        clone.key = new RawCollationKey();
+        return clone;
+    }
+
+    private void natural(char[] chars, int length) {
+        natural.setLength(0);
         int foundTokens = 0;
-        while (m.find()) {
-            int len = m.group(2).length();
-            String fmt = "%0" + digits + "d";
-            String repl = String.format(fmt, len) + m.group();
-            m.appendReplacement(sb, repl);
-            foundTokens++;
-            if (foundTokens >= maxTokens) {
-                break;
+        int i = 0;
+        while (i < length) {
+            char c = chars[i];
+            boolean sign = (c == '+' || c == '-') && i + 1 < length && isDigit(chars[i + 1]);
+            if (foundTokens < maxTokens && (sign || isDigit(c))) {
+                int start = i;
+                if (sign) {
+                    i++;
+                }
+                int digitStart = i;
+                while (i < length && isDigit(chars[i])) {
+                    i++;
+                }
+                appendPadded(i - digitStart);
+                natural.append(chars, start, i - start);
+                foundTokens++;
+            } else {
+                natural.append(c);
+                i++;
             }
         }
-        m.appendTail(sb);
-        return sb.toString();
+    }
+
+    private void appendPadded(int n) {
+        int width = 1;
+        for (int m = n; m >= 10; m /= 10) {
+            width++;
+        }
+        for (int j = width; j < digits; j++) {
+            natural.append('0');
+        }
+        natural.append(n);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     @Override
@@ -1,5 +1,6 @@
 package org.xbib.elasticsearch.index.analysis.naturalsort;
 
+import com.ibm.icu.text.Collator;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
 import org.elasticsearch.common.settings.Settings;
@@ -7,8 +8,6 @@ import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
 
-import java.text.Collator;
-
 /**
  *
  */
@@ -3,26 +3,61 @@ package org.xbib.elasticsearch.index.analysis.sortform;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.apache.lucene.util.automaton.RegExp;
 
 import java.io.IOException;
-import java.util.regex.Pattern;
 
 /**
+ * Removes non-sort areas, together with the whitespace around them, from the term text.
  *
+ * Non-sort areas are given by regular expressions in the syntax of {@link RegExp}, and are
+ * removed in a single pass over the term buffer. At each position, the expressions are tried
+ * in order, and the shortest match of the first matching expression is removed.
+ * By default, the areas are enclosed in <code>&lt;&lt; &gt;&gt;</code>, <code>&lt; &gt;</code>,
+ * <code>U+0098 U+009C</code>, <code>U+02BE U+02BB</code>, or <code>U+00AC U+00AC</code>.
  */
 public class SortformTokenFilter extends TokenFilter {
 
-    private static final Pattern[] patterns = {
-            Pattern.compile("\\s*<<.*?>>\\s*"),
-            Pattern.compile("\\s*<.*?>\\s*"),
-            Pattern.compile("\\s*\u0098.*?\u009C\\s*"),
-            Pattern.compile("\\s*\u02BE.*?\u02BB\\s*"),
-            Pattern.compile("\\s*\u00AC.*?\u00AC\\s*")
+    static final String[] DEFAULT_PATTERNS = {
+            "<<.*>>",
+            "<.*>",
+            "\u0098.*\u009C",
+            "\u02BE.*\u02BB",
+            "\u00AC.*\u00AC"
     };
+
+    private static final CharacterRunAutomaton[] DEFAULT_AREAS = compile(DEFAULT_PATTERNS);
+
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 
+    private final CharacterRunAutomaton[] areas;
+
     protected SortformTokenFilter(TokenStream input) {
+        this(input, DEFAULT_AREAS);
+    }
+
+    /**
+     * @param input the input token stream
+     * @param areas the automata of the non-sort areas, see {@link #compile(String[])}
+     */
+    protected SortformTokenFilter(TokenStream input, CharacterRunAutomaton[] areas) {
         super(input);
+        this.areas = areas;
+    }
+
+    /**
+     * Compile non-sort area expressions.
+     *
+     * @param patterns the regular expressions of the non-sort areas
+     * @return the automata of the non-sort areas
+     */
+    static CharacterRunAutomaton[] compile(String[] patterns) {
+        CharacterRunAutomaton[] areas = new CharacterRunAutomaton[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            areas[i] = new CharacterRunAutomaton(new RegExp(patterns[i], RegExp.NONE).toAutomaton());
+        }
+        return areas;
     }
 
     @Override
@@ -30,15 +65,57 @@ public class SortformTokenFilter extends TokenFilter {
         if (!input.incrementToken()) {
             return false;
         } else {
-            String s = termAtt.toString();
-            for (Pattern pattern : patterns) {
-                s = pattern.matcher(s).replaceAll("");
+            char[] buffer = termAtt.buffer();
+            int length = termAtt.length();
+            int pos = 0;
+            int i = 0;
+            while (i < length) {
+                int end = matchArea(buffer, i, length);
+                if (end < 0) {
+                    buffer[pos++] = buffer[i++];
+                } else {
+                    while (pos > 0 && isWhitespace(buffer[pos - 1])) {
+                        pos--;
+                    }
+                    i = end;
+                    while (i < length && isWhitespace(buffer[i])) {
+                        i++;
+                    }
+                }
             }
-            termAtt.setEmpty().append(s);
+            termAtt.setLength(pos);
             return true;
         }
     }
 
+    /**
+     * Match the non-sort areas at a position.
+     *
+     * @return the end of the shortest match of the first matching area, or -1
+     */
+    private int matchArea(char[] buffer, int start, int length) {
+        for (CharacterRunAutomaton area : areas) {
+            int state = 0;
+            int i = start;
+            while (i < length) {
+                int cp = Character.codePointAt(buffer, i, length);
+                state = area.step(state, cp);
+                if (state == -1) {
+                    break;
+                }
+                i += Character.charCount(cp);
+                if (area.isAccept(state)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
     @Override
     public boolean equals(Object object) {
         return object instanceof SortformTokenFilter;
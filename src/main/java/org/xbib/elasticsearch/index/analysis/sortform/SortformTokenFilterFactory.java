@@ -1,24 +1,35 @@
 package org.xbib.elasticsearch.index.analysis.sortform;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
 
 /**
- *
+ * Creates a {@link SortformTokenFilter}. The non-sort areas can be given as regular
+ * expressions in the <code>patterns</code> setting.
  */
 public class SortformTokenFilterFactory extends AbstractTokenFilterFactory {
 
+    private final CharacterRunAutomaton[] areas;
+
     public SortformTokenFilterFactory(IndexSettings indexSettings, Environment environment, String name,
                                       Settings settings) {
         super(indexSettings, name, settings);
+        String[] patterns = settings.getAsArray("patterns", SortformTokenFilter.DEFAULT_PATTERNS);
+        try {
+            this.areas = SortformTokenFilter.compile(patterns);
+        } catch (IllegalArgumentException e) {
+            throw new ElasticsearchException("invalid sortform patterns", e);
+        }
     }
 
     @Override
     public TokenStream create(TokenStream tokenStream) {
-        return new SortformTokenFilter(tokenStream);
+        return new SortformTokenFilter(tokenStream, areas);
     }
 
 }
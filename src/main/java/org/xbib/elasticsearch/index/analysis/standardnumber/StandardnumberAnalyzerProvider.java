@@ -6,7 +6,6 @@ import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.AbstractIndexAnalyzerProvider;
 import org.elasticsearch.index.analysis.UniqueTokenFilterFactory;
 import org.elasticsearch.index.analysis.WhitespaceTokenizerFactory;
-import org.xbib.elasticsearch.index.mapper.standardnumber.StandardnumberMapper;
 
 /**
  *
@@ -17,12 +16,12 @@ public class StandardnumberAnalyzerProvider extends AbstractIndexAnalyzerProvide
     private final StandardnumberAnalyzer analyzer;
 
     public StandardnumberAnalyzerProvider(IndexSettings indexSettings, Environment environment, String name,
-                                          Settings settings, StandardnumberMapper.TypeParser standardNumberTypeParser) {
+                                          Settings settings) {
         super(indexSettings, name, settings);
         WhitespaceTokenizerFactory tokenizerFactory =
                 new WhitespaceTokenizerFactory(indexSettings, environment, name, settings);
         StandardnumberTokenFilterFactory stdnumTokenFilterFactory =
-                new StandardnumberTokenFilterFactory(indexSettings, environment, name, settings, standardNumberTypeParser);
+                new StandardnumberTokenFilterFactory(indexSettings, environment, name, settings);
         UniqueTokenFilterFactory uniqueTokenFilterFactory =
                 new UniqueTokenFilterFactory(indexSettings, environment, name, settings);
         this.analyzer = new StandardnumberAnalyzer(tokenizerFactory, stdnumTokenFilterFactory, uniqueTokenFilterFactory);
@@ -5,7 +5,6 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PackedTokenAttributeImpl;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
-import org.elasticsearch.common.settings.Settings;
 import org.xbib.elasticsearch.index.mapper.standardnumber.StandardnumberService;
 
 import java.io.IOException;
@@ -22,19 +21,16 @@ public class StandardnumberTokenFilter extends TokenFilter {
 
     private final StandardnumberService service;
 
-    private final Settings settings;
-
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 
     private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
 
     private State current;
 
-    protected StandardnumberTokenFilter(TokenStream input, StandardnumberService service, Settings settings) {
+    protected StandardnumberTokenFilter(TokenStream input, StandardnumberService service) {
         super(input);
         this.tokens = new LinkedList<>();
         this.service = service;
-        this.settings = settings;
     }
 
     @Override
@@ -62,7 +58,7 @@ public class StandardnumberTokenFilter extends TokenFilter {
 
     private void detect() throws CharacterCodingException {
         CharSequence term = new String(termAtt.buffer(), 0, termAtt.length());
-        Collection<CharSequence> variants = service.lookup(settings, term);
+        Collection<CharSequence> variants = service.lookup(term);
         for (CharSequence ch : variants) {
             if (ch != null) {
                 PackedTokenAttributeImpl token = new PackedTokenAttributeImpl();
@@ -82,12 +78,11 @@ public class StandardnumberTokenFilter extends TokenFilter {
     @Override
     public boolean equals(Object object) {
         return object instanceof StandardnumberTokenFilter &&
-                service.equals(((StandardnumberTokenFilter)object).service) &&
-                settings.equals(((StandardnumberTokenFilter)object).settings);
+                service.equals(((StandardnumberTokenFilter)object).service);
     }
 
     @Override
     public int hashCode() {
-        return service.hashCode() ^ settings.hashCode();
+        return service.hashCode();
     }
 }
@@ -0,0 +1,65 @@
+package org.xbib.elasticsearch.index.analysis.symbolname;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A table of the symbol names of code points, built lazily in pages of 256 code points,
+ * and shared by all symbol name filters of a node.
+ *
+ * A symbol is a code point that is not a letter. The symbol name is the Unicode character
+ * name in upper case, without spaces and hyphens, enclosed in double underscores, for example
+ * <code>__PLUSSIGN__</code> for <code>+</code>.
+ */
+final class SymbolNames {
+
+    private static final int PAGE_SHIFT = 8;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final AtomicReferenceArray<String[]> pages =
+            new AtomicReferenceArray<>((Character.MAX_CODE_POINT + 1) >> PAGE_SHIFT);
+
+    private SymbolNames() {
+    }
+
+    /**
+     * @param codePoint the code point
+     * @return the symbol name, or null if the code point is a letter or has no name
+     */
+    static String get(int codePoint) {
+        int page = codePoint >> PAGE_SHIFT;
+        String[] names = pages.get(page);
+        if (names == null) {
+            names = createPage(page);
+            if (!pages.compareAndSet(page, null, names)) {
+                names = pages.get(page);
+            }
+        }
+        return names[codePoint & (PAGE_SIZE - 1)];
+    }
+
+    private static String[] createPage(int page) {
+        String[] names = new String[PAGE_SIZE];
+        int base = page << PAGE_SHIFT;
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            int codePoint = base + i;
+            if (Character.isLetter(codePoint)) {
+                continue;
+            }
+            String name = Character.getName(codePoint);
+            if (name == null) {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder(name.length() + 4).append("__");
+            for (int j = 0; j < name.length(); j++) {
+                char ch = name.charAt(j);
+                if (ch != '-' && !Character.isWhitespace(ch)) {
+                    sb.append(ch);
+                }
+            }
+            names[i] = sb.append("__").toString().toUpperCase(Locale.ROOT);
+        }
+        return names;
+    }
+}
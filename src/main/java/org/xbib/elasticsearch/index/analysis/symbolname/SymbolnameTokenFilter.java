@@ -3,53 +3,67 @@ package org.xbib.elasticsearch.index.analysis.symbolname;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.tokenattributes.PackedTokenAttributeImpl;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 
 import java.io.IOException;
-import java.nio.charset.CharacterCodingException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
+ * Adds variants of tokens with symbols, where each symbol is replaced by its name.
+ * The first variant is the token with replaced symbols, separated by spaces from the
+ * preceding text, the following variants are the space-separated parts of the first variant.
+ * All variants are emitted at the position of the token.
  *
+ * The symbol names are taken from a precomputed table, see {@link SymbolNames}, and the
+ * variants are written into a buffer that is reused for all tokens.
  */
 public class SymbolnameTokenFilter extends TokenFilter {
 
-    private static final Pattern pattern = Pattern.compile("\\P{L}", Pattern.UNICODE_CHARACTER_CLASS);
-
-    private final LinkedList<PackedTokenAttributeImpl> tokens;
-
     private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 
     private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
 
+    private final StringBuilder variant = new StringBuilder();
+
     private State current;
 
+    /**
+     * The start of the next variant in the variant buffer, or -1 if there are no more variants.
+     */
+    private int variantPos;
+
+    private boolean split;
+
     protected SymbolnameTokenFilter(TokenStream input) {
         super(input);
-        this.tokens = new LinkedList<>();
+        this.variantPos = -1;
     }
 
     @Override
     public final boolean incrementToken() throws IOException {
-        if (!tokens.isEmpty()) {
-            if (current == null) {
-                throw new IllegalArgumentException("current is null");
-            }
-            PackedTokenAttributeImpl token = tokens.removeFirst();
+        if (variantPos >= 0) {
             restoreState(current);
-            termAtt.setEmpty().append(token);
+            if (!split) {
+                termAtt.setEmpty().append(variant);
+                split = true;
+                if (variant.indexOf(" ") < 0) {
+                    variantPos = -1;
+                }
+            } else {
+                int end = variant.indexOf(" ", variantPos);
+                if (end < 0) {
+                    end = variant.length();
+                }
+                termAtt.setEmpty().append(variant, variantPos, end);
+                variantPos = end < variant.length() ? end + 1 : -1;
+            }
             posIncAtt.setPositionIncrement(0);
             return true;
         }
         if (input.incrementToken()) {
-            process();
-            if (!tokens.isEmpty()) {
+            if (process()) {
                 current = captureState();
+                variantPos = 0;
+                split = false;
             }
             return true;
         } else {
@@ -60,41 +74,36 @@ public class SymbolnameTokenFilter extends TokenFilter {
     @Override
     public void reset() throws IOException {
         super.reset();
-        tokens.clear();
+        variantPos = -1;
         current = null;
     }
 
-    protected void process() throws CharacterCodingException {
-        String term = new String(termAtt.buffer(), 0, termAtt.length());
-        for (CharSequence charSequence : process(term)) {
-            if (charSequence != null) {
-                PackedTokenAttributeImpl token = new PackedTokenAttributeImpl();
-                token.append(charSequence);
-                tokens.add(token);
-            }
-        }
-    }
-
-    protected Collection<CharSequence> process(String term) {
-        Collection<CharSequence> variants = new LinkedList<>();
-        StringBuffer sb = new StringBuffer();
-        Matcher m = pattern.matcher(term);
-        while (m.find()) {
-            String symbol = m.group();
-            Character ch = symbol.charAt(0);
-            String symbolname = " __" + Character.getName(ch).toUpperCase()
-                    .replaceAll("\\s", "").replaceAll("\\-", "") + "__";
-            m.appendReplacement(sb, symbolname);
-        }
-        m.appendTail(sb);
-        String variant = sb.toString().trim();
-        if (!variant.equals(term)) {
-            variants.add(variant);
-            if (variant.indexOf(' ') >= 0) {
-                Collections.addAll(variants, variant.split("\\s"));
+    /**
+     * Write the term with replaced symbols into the variant buffer.
+     *
+     * @return true if a symbol was replaced
+     */
+    protected boolean process() {
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        variant.setLength(0);
+        boolean replaced = false;
+        int i = 0;
+        while (i < length) {
+            int codePoint = Character.codePointAt(buffer, i, length);
+            String name = SymbolNames.get(codePoint);
+            if (name != null) {
+                if (variant.length() > 0) {
+                    variant.append(' ');
+                }
+                variant.append(name);
+                replaced = true;
+            } else {
+                variant.appendCodePoint(codePoint);
             }
+            i += Character.charCount(codePoint);
         }
-        return variants;
+        return replaced;
     }
 
     @Override
@@ -0,0 +1,339 @@
+package org.xbib.elasticsearch.index.mapper.icu;
+
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.text.RawCollationKey;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CloseableThreadLocal;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.plain.DocValuesIndexFieldData;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.Mapper;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.xbib.elasticsearch.index.analysis.icu.IcuCollationAttributeFactory;
+import org.xbib.elasticsearch.index.analysis.icu.IcuCollationKeyAnalyzerProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.elasticsearch.index.mapper.TypeParsers.parseField;
+import static org.elasticsearch.index.mapper.TypeParsers.parseMultiField;
+
+/**
+ * A field mapper that computes the ICU collation key of each value once, and writes it to
+ * sorted doc values. Sorting by such a field follows the collation rules of a locale, and
+ * needs no fielddata on the heap. The field is not indexed by default; if it is, term and
+ * range queries are collated, too.
+ *
+ * The collator is configured with the same parameters as the <code>icu_collation</code>
+ * analyzer, for example <code>language</code>, <code>country</code>, <code>strength</code>,
+ * or <code>rules</code>. Collation keys can be trimmed with <code>keyLevels</code> and
+ * <code>maxKeyLength</code>.
+ */
+public class IcuCollationKeywordFieldMapper extends FieldMapper {
+
+    public static final String MAPPER_TYPE = "icu_collation_keyword";
+
+    private static final Set<String> COLLATOR_PARAMETERS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "rules", "locale", "language", "country", "variant", "strength", "decomposition", "alternate",
+            "caseLevel", "caseFirst", "numeric", "variableTop", "reorder", "keyLevels", "maxKeyLength")));
+
+    private Map<String, Object> collatorParameters;
+
+    public IcuCollationKeywordFieldMapper(String simpleName, MappedFieldType fieldType, MappedFieldType defaultFieldType,
+                                          Settings indexSettings, MultiFields multiFields, CopyTo copyTo,
+                                          Map<String, Object> collatorParameters) {
+        super(simpleName, fieldType, defaultFieldType, indexSettings, multiFields, copyTo);
+        this.collatorParameters = collatorParameters;
+    }
+
+    @Override
+    public CollationFieldType fieldType() {
+        return (CollationFieldType) super.fieldType();
+    }
+
+    @Override
+    protected String contentType() {
+        return MAPPER_TYPE;
+    }
+
+    @Override
+    protected void parseCreateField(ParseContext context, List<Field> fields) throws IOException {
+        String value;
+        if (context.externalValueSet()) {
+            value = context.externalValue().toString();
+        } else {
+            XContentParser parser = context.parser();
+            if (parser.currentToken() == XContentParser.Token.VALUE_NULL) {
+                value = fieldType().nullValueAsString();
+            } else {
+                value = parser.textOrNull();
+            }
+        }
+        if (value == null) {
+            return;
+        }
+        BytesRef bytes = fieldType().collationKey(value);
+        if (fieldType().indexOptions() != IndexOptions.NONE || fieldType().stored()) {
+            fields.add(new Field(fieldType().name(), bytes, fieldType()));
+        }
+        if (fieldType().hasDocValues()) {
+            fields.add(new SortedSetDocValuesField(fieldType().name(), bytes));
+        }
+    }
+
+    @Override
+    protected void doMerge(Mapper mergeWith, boolean updateAllTypes) {
+        super.doMerge(mergeWith, updateAllTypes);
+        IcuCollationKeywordFieldMapper other = (IcuCollationKeywordFieldMapper) mergeWith;
+        if (!Objects.equals(collatorParameters, other.collatorParameters)) {
+            throw new IllegalArgumentException("mapper [" + name() + "] has different collator parameters");
+        }
+    }
+
+    @Override
+    protected void doXContentBody(XContentBuilder builder, boolean includeDefaults, Params params) throws IOException {
+        super.doXContentBody(builder, includeDefaults, params);
+        if (includeDefaults || fieldType().nullValue() != null) {
+            builder.field("null_value", fieldType().nullValue());
+        }
+        for (Map.Entry<String, Object> entry : collatorParameters.entrySet()) {
+            builder.field(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * The field type of collation keys. Query values are converted to collation keys, and
+     * values of the field are collation keys, so they are shown in base64 encoding.
+     *
+     * The frozen collator of the field type is only a template. Keys are computed by a thawed
+     * clone per thread, because a frozen collator locks on every key computation.
+     */
+    public static final class CollationFieldType extends MappedFieldType {
+
+        private Collator collator;
+
+        private CloseableThreadLocal<KeyGenerator> keyGenerators;
+
+        private int keyLevels;
+
+        private int maxKeyLength;
+
+        public CollationFieldType() {
+        }
+
+        CollationFieldType(CollationFieldType ref) {
+            super(ref);
+            this.collator = ref.collator;
+            this.keyGenerators = ref.keyGenerators;
+            this.keyLevels = ref.keyLevels;
+            this.maxKeyLength = ref.maxKeyLength;
+        }
+
+        @Override
+        public CollationFieldType clone() {
+            return new CollationFieldType(this);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return super.equals(o) && Objects.equals(collator, ((CollationFieldType) o).collator) &&
+                    keyLevels == ((CollationFieldType) o).keyLevels &&
+                    maxKeyLength == ((CollationFieldType) o).maxKeyLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), collator, keyLevels, maxKeyLength);
+        }
+
+        @Override
+        public String typeName() {
+            return MAPPER_TYPE;
+        }
+
+        public Collator collator() {
+            return collator;
+        }
+
+        public void setCollator(Collator collator) {
+            checkIfFrozen();
+            this.collator = collator.isFrozen() ? collator : collator.freeze();
+            final Collator template = this.collator;
+            this.keyGenerators = new CloseableThreadLocal<KeyGenerator>() {
+                @Override
+                protected KeyGenerator initialValue() {
+                    return new KeyGenerator(template);
+                }
+            };
+        }
+
+        public void setKeyTrimming(int keyLevels, int maxKeyLength) {
+            checkIfFrozen();
+            this.keyLevels = keyLevels;
+            this.maxKeyLength = maxKeyLength;
+        }
+
+        @Override
+        public IndexFieldData.Builder fielddataBuilder() {
+            failIfNoDocValues();
+            return new DocValuesIndexFieldData.Builder();
+        }
+
+        @Override
+        public Query nullValueQuery() {
+            return nullValue() == null ? null : termQuery(nullValue(), null);
+        }
+
+        @Override
+        public Query termQuery(Object value, QueryShardContext context) {
+            failIfNotIndexed();
+            return new TermQuery(new Term(name(), collationKey(value)));
+        }
+
+        @Override
+        public Query rangeQuery(Object lowerTerm, Object upperTerm, boolean includeLower, boolean includeUpper,
+                                QueryShardContext context) {
+            failIfNotIndexed();
+            return new TermRangeQuery(name(), lowerTerm == null ? null : collationKey(lowerTerm),
+                    upperTerm == null ? null : collationKey(upperTerm), includeLower, includeUpper);
+        }
+
+        @Override
+        public Object valueForDisplay(Object value) {
+            if (value == null) {
+                return null;
+            }
+            BytesRef bytesRef = (BytesRef) value;
+            return Base64.getEncoder().encodeToString(Arrays.copyOfRange(bytesRef.bytes, bytesRef.offset,
+                    bytesRef.offset + bytesRef.length));
+        }
+
+        private BytesRef collationKey(Object value) {
+            String s = value instanceof BytesRef ? ((BytesRef) value).utf8ToString() : value.toString();
+            KeyGenerator generator = keyGenerators.get();
+            RawCollationKey key = generator.collator.getRawCollationKey(s, generator.key);
+            return new BytesRef(Arrays.copyOf(key.bytes,
+                    IcuCollationAttributeFactory.trimmedLength(key.bytes, key.size, keyLevels, maxKeyLength)));
+        }
+    }
+
+    /**
+     * A thawed collator and a reusable collation key, owned by a single thread.
+     */
+    private static final class KeyGenerator {
+
+        private final Collator collator;
+
+        private final RawCollationKey key = new RawCollationKey();
+
+        KeyGenerator(Collator template) {
+            // clone the collator: see http://userguide.icu-project.org/collation/architecture
+            this.collator = template.cloneAsThawed();
+        }
+    }
+
+    public static class Builder extends FieldMapper.Builder<Builder, IcuCollationKeywordFieldMapper> {
+
+        private static final CollationFieldType FIELD_TYPE = new CollationFieldType();
+
+        static {
+            FIELD_TYPE.setTokenized(false);
+            FIELD_TYPE.setOmitNorms(true);
+            FIELD_TYPE.setIndexOptions(IndexOptions.NONE);
+            FIELD_TYPE.setHasDocValues(true);
+            FIELD_TYPE.freeze();
+        }
+
+        private final Map<String, Object> collatorParameters = new TreeMap<>();
+
+        public Builder(String name) {
+            super(name, FIELD_TYPE, FIELD_TYPE);
+            this.builder = this;
+        }
+
+        @Override
+        public CollationFieldType fieldType() {
+            return (CollationFieldType) super.fieldType();
+        }
+
+        @Override
+        protected IndexOptions getDefaultIndexOption() {
+            return IndexOptions.DOCS;
+        }
+
+        Builder collatorParameter(String name, Object value) {
+            collatorParameters.put(name, value);
+            return this;
+        }
+
+        @Override
+        public IcuCollationKeywordFieldMapper build(BuilderContext context) {
+            Settings.Builder settings = Settings.builder();
+            for (Map.Entry<String, Object> entry : collatorParameters.entrySet()) {
+                if (entry.getValue() instanceof List) {
+                    settings.putArray(entry.getKey(), ((List<?>) entry.getValue()).stream()
+                            .map(Object::toString).toArray(String[]::new));
+                } else {
+                    settings.put(entry.getKey(), entry.getValue().toString());
+                }
+            }
+            Settings collatorSettings = settings.build();
+            fieldType().setCollator(IcuCollationKeyAnalyzerProvider.createCollator(collatorSettings));
+            fieldType().setKeyTrimming(IcuCollationKeyAnalyzerProvider.getKeyLevels(collatorSettings),
+                    collatorSettings.getAsInt("maxKeyLength", 0));
+            setupFieldType(context);
+            return new IcuCollationKeywordFieldMapper(name, fieldType, defaultFieldType, context.indexSettings(),
+                    multiFieldsBuilder.build(this, context), copyTo, collatorParameters);
+        }
+    }
+
+    public static class TypeParser implements Mapper.TypeParser {
+
+        @Override
+        public Mapper.Builder<?, ?> parse(String name, Map<String, Object> node, ParserContext parserContext) {
+            Builder builder = new Builder(name);
+            parseField(builder, name, node, parserContext);
+            Iterator<Map.Entry<String, Object>> iterator = node.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Object> entry = iterator.next();
+                String propName = entry.getKey();
+                Object propNode = entry.getValue();
+                if ("null_value".equals(propName)) {
+                    if (propNode == null) {
+                        throw new MapperParsingException("property [null_value] cannot be null");
+                    }
+                    builder.nullValue(propNode.toString());
+                    iterator.remove();
+                } else if (COLLATOR_PARAMETERS.contains(propName)) {
+                    builder.collatorParameter(propName, propNode);
+                    iterator.remove();
+                } else if (parseMultiField(builder, name, parserContext, propName, propNode)) {
+                    iterator.remove();
+                }
+            }
+            return builder;
+        }
+    }
+}
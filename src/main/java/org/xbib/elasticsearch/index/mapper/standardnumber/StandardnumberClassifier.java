@@ -0,0 +1,183 @@
+package org.xbib.elasticsearch.index.mapper.standardnumber;
+
+/**
+ * Classifies a candidate string in a single pass before standard number validation.
+ *
+ * The scan counts digits and letters, the longest run of digits, <code>X</code>, and dashes,
+ * and finds the <code>ark:</code> and <code>10.</code> prefixes. From these, the types with a
+ * plausible shape are selected, so most words are rejected without running the regular
+ * expressions and checksums of every standard number type.
+ */
+final class StandardnumberClassifier {
+
+    static final int ARK = 1;
+    static final int DOI = 1 << 1;
+    static final int EAN = 1 << 2;
+    static final int GTIN = 1 << 3;
+    static final int IBAN = 1 << 4;
+    static final int ISAN = 1 << 5;
+    static final int ISBN = 1 << 6;
+    static final int ISMN = 1 << 7;
+    static final int ISNI = 1 << 8;
+    static final int ISSN = 1 << 9;
+    static final int ISTC = 1 << 10;
+    static final int ISWC = 1 << 11;
+    static final int ORCID = 1 << 12;
+    static final int PPN = 1 << 13;
+    static final int UPC = 1 << 14;
+    static final int ZDB = 1 << 15;
+
+    private StandardnumberClassifier() {
+    }
+
+    /**
+     * Return the bit of a standard number type.
+     *
+     * @param type the type name
+     * @return the bit, or 0 if the type is unknown
+     */
+    static int bit(String type) {
+        switch (type) {
+            case "ark":
+                return ARK;
+            case "doi":
+                return DOI;
+            case "ean":
+                return EAN;
+            case "gtin":
+                return GTIN;
+            case "iban":
+                return IBAN;
+            case "isan":
+                return ISAN;
+            case "isbn":
+                return ISBN;
+            case "ismn":
+                return ISMN;
+            case "isni":
+                return ISNI;
+            case "issn":
+                return ISSN;
+            case "istc":
+                return ISTC;
+            case "iswc":
+                return ISWC;
+            case "orcid":
+                return ORCID;
+            case "ppn":
+                return PPN;
+            case "upc":
+                return UPC;
+            case "zdb":
+                return ZDB;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Check if a type is plausible for a classification.
+     *
+     * @param types the classification
+     * @param type  the type name
+     * @return true if the type should be validated
+     */
+    static boolean isPlausible(int types, String type) {
+        return (types & bit(type)) != 0;
+    }
+
+    /**
+     * Classify a string.
+     *
+     * @param s the string
+     * @return the bits of the plausible standard number types
+     */
+    static int classify(CharSequence s) {
+        int length = s.length();
+        if (length == 0) {
+            return 0;
+        }
+        int digits = 0;
+        int letters = 0;
+        int upper = 0;
+        int run = 0;
+        int maxRun = 0;
+        boolean doiPrefix = false;
+        boolean slash = false;
+        for (int i = 0; i < length; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits++;
+                run++;
+            } else if (ch == 'X' || ch == 'x') {
+                letters++;
+                if (ch == 'X') {
+                    upper++;
+                }
+                run++;
+            } else if (Character.getType(ch) == Character.DASH_PUNCTUATION) {
+                run++;
+            } else {
+                if (ch >= 'A' && ch <= 'Z') {
+                    letters++;
+                    upper++;
+                } else if (ch >= 'a' && ch <= 'z') {
+                    letters++;
+                } else if (ch == '.') {
+                    doiPrefix |= i >= 2 && s.charAt(i - 2) == '1' && s.charAt(i - 1) == '0';
+                } else if (ch == '/') {
+                    slash = true;
+                }
+                maxRun = Math.max(maxRun, run);
+                run = 0;
+            }
+        }
+        maxRun = Math.max(maxRun, run);
+        char first = s.charAt(0);
+        boolean digitFirst = first >= '0' && first <= '9';
+        int types = 0;
+        if (length > 4 && s.charAt(0) == 'a' && s.charAt(1) == 'r' && s.charAt(2) == 'k' && s.charAt(3) == ':') {
+            types |= ARK;
+        }
+        if (doiPrefix && slash) {
+            types |= DOI;
+        }
+        if (digits >= 13) {
+            types |= EAN;
+        }
+        if (digits >= 3) {
+            types |= GTIN | PPN;
+        }
+        if (length >= 15 && upper >= 2 && digits >= 2) {
+            types |= IBAN;
+        }
+        if (digits + letters >= 16) {
+            types |= ISAN;
+        }
+        if (digits >= 4 && digits + letters >= 12) {
+            types |= ISTC;
+        }
+        if (digits >= 9 && maxRun >= 10) {
+            types |= ISBN;
+        }
+        if (digits >= 9 && (digitFirst || first == 'M' || Character.getType(first) == Character.DASH_PUNCTUATION)) {
+            types |= ISMN;
+        }
+        if (digits >= 15) {
+            types |= ISNI | ORCID;
+        }
+        if (digits >= 7 && maxRun >= 8) {
+            types |= ISSN;
+        }
+        if (digits >= 9) {
+            types |= ISWC;
+        }
+        if (digitFirst) {
+            types |= UPC;
+            if (digits >= 3) {
+                types |= ZDB;
+            }
+        }
+        return types;
+    }
+}
@@ -1,5 +1,6 @@
 package org.xbib.elasticsearch.index.mapper.standardnumber;
 
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -21,28 +22,65 @@ import org.xbib.elasticsearch.common.standardnumber.StandardNumber;
 import org.xbib.elasticsearch.common.standardnumber.UPC;
 import org.xbib.elasticsearch.common.standardnumber.ZDB;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.TreeSet;
 
 /**
+ * Detects standard numbers of the types given in the <code>number_types</code> setting, or of the
+ * default types. The types are fixed when the service is created, and each candidate is validated
+ * by new standard number instances, so a service can be shared by all threads.
  *
+ * The node-level service, created with the node settings, is given to the standard number field
+ * mapper when it starts. Token filters create their own services from their settings, and
+ * do not change the service of the mapper.
  */
 public class StandardnumberService extends AbstractLifecycleComponent {
 
-    private static final ThreadLocal<Set<StandardNumber>> stdnums = new ThreadLocal<>();
+    // do not contains ISTC and SICI by default, too broad character pattern filter mangles up everything.
+    private static final List<String> DEFAULT_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "ark", "doi", "ean", "gtin", "iban", "isan", "isbn", "ismn", "isni", "issn", "iswc", "orcid",
+            "ppn", "upc", "zdb"));
+
+    private final List<String> types;
+
+    private final int classifiedTypes;
+
+    private final StandardnumberMapperTypeParser standardNumberTypeParser;
 
-    @Inject
     public StandardnumberService(Settings settings) {
-        super(settings);
+        this(settings, null);
     }
 
-    public void setStandardNumberTypeParser(StandardnumberMapper.TypeParser standardNumberTypeParser) {
-        standardNumberTypeParser.setService(this);
+    @Inject
+    public StandardnumberService(Settings settings, StandardnumberMapperTypeParser standardNumberTypeParser) {
+        super(settings);
+        this.standardNumberTypeParser = standardNumberTypeParser;
+        String[] s = settings.getAsArray("number_types", null);
+        if (s != null) {
+            Set<String> set = new TreeSet<>();
+            for (String type : s) {
+                String name = type.toLowerCase(Locale.ROOT);
+                if (create(name) == null) {
+                    throw new ElasticsearchException("unknown standard number type: " + type);
+                }
+                set.add(name);
+            }
+            this.types = Collections.unmodifiableList(new ArrayList<>(set));
+        } else {
+            this.types = DEFAULT_TYPES;
+        }
+        int bits = 0;
+        for (String type : types) {
+            bits |= StandardnumberClassifier.bit(type);
+        }
+        this.classifiedTypes = bits;
     }
 
     public static StandardNumber create(String type) {
@@ -93,31 +131,15 @@ public class StandardnumberService extends AbstractLifecycleComponent {
         return stdnums;
     }
 
-    // do not contains ISTC and SICI by default, too broad character pattern filter mangles up everything.
     public static Collection<StandardNumber> create() {
-        StandardNumber[] array = new StandardNumber[]{
-                new ARK(),
-                new DOI(),
-                new EAN(),
-                new GTIN(),
-                new IBAN(),
-                new ISAN(),
-                new ISBN(),
-                new ISMN(),
-                new ISNI(),
-                new ISSN(),
-                new ISWC(),
-                new ORCID(),
-                new PPN(),
-                new UPC(),
-                new ZDB()
-        };
-        return Arrays.asList(array);
+        return create(DEFAULT_TYPES);
     }
 
     @Override
     protected void doStart() {
-        // nothing to do
+        if (standardNumberTypeParser != null) {
+            standardNumberTypeParser.setService(this);
+        }
     }
 
     @Override
@@ -130,38 +152,54 @@ public class StandardnumberService extends AbstractLifecycleComponent {
         // nothing to do
     }
 
-    protected Collection<StandardNumber> getStdNums(Settings settings) {
-        if (stdnums.get() == null) {
-            String[] s = settings.getAsArray("number_types", null);
-            Set<String> types = s != null ? new TreeSet<>(Arrays.asList(s)) : null;
-            Set<StandardNumber> set = new LinkedHashSet<>();
-            set.addAll(types == null ? create() : create(types));
-            stdnums.set(set);
-        }
-        return stdnums.get();
+    /**
+     * Return the standard number types of this service.
+     *
+     * @return the sorted type names
+     */
+    public List<String> getTypes() {
+        return types;
     }
 
     public Collection<StandardNumber> detect(CharSequence content) {
         Collection<StandardNumber> candidates = new LinkedList<>();
-        for (StandardNumber stdnum : getStdNums(settings)) {
-            stdnum.reset();
+        int plausible = StandardnumberClassifier.classify(content) & classifiedTypes;
+        if (plausible == 0) {
+            return candidates;
+        }
+        for (String type : types) {
+            if (!StandardnumberClassifier.isPlausible(plausible, type)) {
+                continue;
+            }
             try {
-                candidates.add(stdnum.set(content).normalize().verify());
-            } catch (NumberFormatException e) {
-                // skip
+                candidates.add(create(type).set(content).normalize().verify());
+            } catch (IllegalArgumentException e) {
+                // skip, also invalid URIs of ARK
             }
         }
         return candidates;
     }
 
-    public Collection<CharSequence> lookup(Settings settings, CharSequence content) {
+    public Collection<CharSequence> lookup(CharSequence content) {
         Collection<CharSequence> variants = new LinkedList<>();
-        for (StandardNumber stdnum : getStdNums(settings)) {
-            stdnum.reset();
+        int plausible = StandardnumberClassifier.classify(content) & classifiedTypes;
+        if (plausible == 0) {
+            return variants;
+        }
+        for (String type : types) {
+            if (!StandardnumberClassifier.isPlausible(plausible, type)) {
+                continue;
+            }
+            StandardNumber stdnum = create(type);
             if (stdnum instanceof ISBN) {
                 handleISBN((ISBN) stdnum, content, variants);
             } else {
-                stdnum = stdnum.set(content).normalize();
+                try {
+                    stdnum = stdnum.set(content).normalize();
+                } catch (IllegalArgumentException e) {
+                    // skip, invalid URIs of ARK
+                    continue;
+                }
                 if (stdnum.isValid()) {
                     for (String s : stdnum.getTypedVariants()) {
                         if (s != null) {
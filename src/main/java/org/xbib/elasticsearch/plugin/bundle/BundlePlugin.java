@@ -31,6 +31,7 @@ import org.xbib.elasticsearch.index.analysis.german.GermanNormalizationFilterFac
 import org.xbib.elasticsearch.index.analysis.hyphen.HyphenAnalyzerProvider;
 import org.xbib.elasticsearch.index.analysis.hyphen.HyphenTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.hyphen.HyphenTokenizerFactory;
+import org.xbib.elasticsearch.index.analysis.icu.IcuCasefoldFoldingTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuCollationKeyAnalyzerProvider;
 import org.xbib.elasticsearch.index.analysis.icu.IcuCollationTokenizerFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuFoldingCharFilterFactory;
@@ -38,6 +39,7 @@ import org.xbib.elasticsearch.index.analysis.icu.IcuFoldingTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuNormalizerCharFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuNormalizerTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuNumberFormatTokenFilterFactory;
+import org.xbib.elasticsearch.index.analysis.icu.IcuScriptRouterTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.IcuTransformTokenFilterFactory;
 import org.xbib.elasticsearch.index.analysis.icu.segmentation.IcuTokenizerFactory;
 import org.xbib.elasticsearch.index.analysis.naturalsort.NaturalSortKeyAnalyzerProvider;
@@ -51,6 +53,7 @@ import org.xbib.elasticsearch.index.analysis.worddelimiter.WordDelimiterFilter2F
 import org.xbib.elasticsearch.index.analysis.worddelimiter.WordDelimiterFilterFactory;
 import org.xbib.elasticsearch.index.analysis.year.GregorianYearTokenFilterFactory;
 import org.xbib.elasticsearch.index.mapper.crypt.CryptMapper;
+import org.xbib.elasticsearch.index.mapper.icu.IcuCollationKeywordFieldMapper;
 import org.xbib.elasticsearch.index.mapper.langdetect.LangdetectMapper;
 import org.xbib.elasticsearch.index.mapper.reference.ReferenceMapper;
 import org.xbib.elasticsearch.index.mapper.reference.ReferenceMapperModule;
@@ -102,8 +105,11 @@ public class BundlePlugin extends Plugin implements AnalysisPlugin, MapperPlugin
         if (settings.getAsBoolean("plugins.xbib.icu.enabled", true)) {
             extra.put("icu_normalizer", IcuNormalizerTokenFilterFactory::new);
             extra.put("icu_folding", IcuFoldingTokenFilterFactory::new);
+            extra.put("icu_casefold_folding", IcuCasefoldFoldingTokenFilterFactory::new);
             extra.put("icu_transform", IcuTransformTokenFilterFactory::new);
             extra.put("icu_numberformat", IcuNumberFormatTokenFilterFactory::new);
+            extra.put(IcuScriptRouterTokenFilterFactory.TYPE, (indexSettings, environment, name, factorySettings) ->
+                    new IcuScriptRouterTokenFilterFactory(indexSettings, environment, name, factorySettings, extra));
         }
         extra.put("auto_phrase", AutoPhrasingTokenFilterFactory::new);
         extra.put("baseform", BaseformTokenFilterFactory::new);
@@ -113,8 +119,7 @@ public class BundlePlugin extends Plugin implements AnalysisPlugin, MapperPlugin
         extra.put("german_normalize", GermanNormalizationFilterFactory::new);
         extra.put("hyphen", HyphenTokenFilterFactory::new);
         extra.put("sortform", SortformTokenFilterFactory::new);
-        extra.put("standardnumber", (indexSettings, environment, name, factorySettings) ->
-                new StandardnumberTokenFilterFactory(indexSettings, environment, name, factorySettings, standardNumberTypeParser));
+        extra.put("standardnumber", StandardnumberTokenFilterFactory::new);
         extra.put("fst_decompound", FstDecompoundTokenFilterFactory::new);
         extra.put("worddelimiter", WordDelimiterFilterFactory::new);
         extra.put("worddelimiter2", WordDelimiterFilter2Factory::new);
@@ -144,8 +149,7 @@ public class BundlePlugin extends Plugin implements AnalysisPlugin, MapperPlugin
         extra.put("hyphen", HyphenAnalyzerProvider::new);
         extra.put("naturalsort", NaturalSortKeyAnalyzerProvider::new);
         extra.put("sortform", SortformAnalyzerProvider::new);
-        extra.put("standardnumber", (indexSettings, environment, name, factorySettings) ->
-                new StandardnumberAnalyzerProvider(indexSettings, environment, name, factorySettings, standardNumberTypeParser));
+        extra.put("standardnumber", StandardnumberAnalyzerProvider::new);
         return extra;
     }
 
@@ -156,6 +160,7 @@ public class BundlePlugin extends Plugin implements AnalysisPlugin, MapperPlugin
         extra.put(ReferenceMapper.MAPPER_TYPE, referenceMapperTypeParser);
         extra.put(CryptMapper.MAPPER_TYPE, new CryptMapper.TypeParser());
         extra.put(LangdetectMapper.MAPPER_TYPE, new LangdetectMapper.TypeParser());
+        extra.put(IcuCollationKeywordFieldMapper.MAPPER_TYPE, new IcuCollationKeywordFieldMapper.TypeParser());
         return extra;
     }
 
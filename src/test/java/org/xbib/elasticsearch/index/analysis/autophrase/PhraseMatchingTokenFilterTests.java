@@ -0,0 +1,152 @@
+package org.xbib.elasticsearch.index.analysis.autophrase;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.xbib.elasticsearch.MapperTestUtils.tokenFilterFactory;
+
+/**
+ *
+ */
+public class PhraseMatchingTokenFilterTests extends Assert {
+
+    private static final List<String> PHRASES = Arrays.asList("income tax", "tax refund",
+            "property tax", "new york", "new york city", "city of new york");
+
+    @Test
+    public void testOverlapping() throws IOException {
+        assertEquals(Arrays.asList("what", "is", "my", "income_tax", "tax_refund", "this", "year",
+                "my", "property_tax", "is", "high"),
+                terms("what is my income tax refund this year my property tax is high", false));
+    }
+
+    @Test
+    public void testLongestMatch() throws IOException {
+        assertEquals(Arrays.asList("new_york_city", "is", "big"), terms("new york city is big", false));
+        assertEquals(Arrays.asList("the", "great", "city_of_new_york"), terms("the great city of new york", false));
+        assertEquals(Arrays.asList("new_york", "state"), terms("new york state", false));
+        assertEquals(Arrays.asList("new", "new_york", "new_york_city"), terms("new new york new york city", false));
+    }
+
+    @Test
+    public void testIncompletePhrase() throws IOException {
+        assertEquals(Arrays.asList("the", "city", "of", "new", "jersey"), terms("the city of new jersey", false));
+        assertEquals(Arrays.asList("income"), terms("income", false));
+    }
+
+    @Test
+    public void testEmitSingleTokens() throws IOException {
+        assertEquals(Arrays.asList("new", "new_york", "new_york_city", "york", "city"),
+                terms("new york city", true));
+        assertEquals(Arrays.asList("income", "income_tax", "tax", "tax_refund", "refund"),
+                terms("income tax refund", true));
+    }
+
+    @Test
+    public void testPositions() throws IOException {
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader("in new york city now"));
+        TokenStream stream = new PhraseMatchingTokenFilter(tokenizer, PhraseTrie.compile(PHRASES, false, '_'), true);
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        PositionLengthAttribute posLenAtt = stream.addAttribute(PositionLengthAttribute.class);
+        String[] terms = { "in", "new", "new_york", "new_york_city", "york", "city", "now" };
+        int[] posIncs = { 1, 1, 0, 0, 1, 1, 1 };
+        int[] posLens = { 1, 1, 2, 3, 1, 1, 1 };
+        int[] startOffsets = { 0, 3, 3, 3, 7, 12, 17 };
+        int[] endOffsets = { 2, 6, 11, 16, 11, 16, 20 };
+        stream.reset();
+        for (int i = 0; i < terms.length; i++) {
+            assertTrue(stream.incrementToken());
+            assertEquals(terms[i], termAtt.toString());
+            assertEquals(terms[i], posIncs[i], posIncAtt.getPositionIncrement());
+            assertEquals(terms[i], posLens[i], posLenAtt.getPositionLength());
+            assertEquals(terms[i], startOffsets[i], offsetAtt.startOffset());
+            assertEquals(terms[i], endOffsets[i], offsetAtt.endOffset());
+        }
+        assertFalse(stream.incrementToken());
+        stream.end();
+        stream.close();
+    }
+
+    @Test
+    public void testIgnoreCase() throws IOException {
+        List<String> phrases = Arrays.asList("New York");
+        for (PhraseDictionary dictionary : Arrays.asList(PhraseTrie.compile(phrases, true, '_'),
+                FSTPhraseDictionary.compile(phrases, true, '_'))) {
+            WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+            tokenizer.setReader(new StringReader("NEW YORK"));
+            assertEquals(Arrays.asList("New_York"), terms(new PhraseMatchingTokenFilter(tokenizer, dictionary, false)));
+        }
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FSTPhraseDictionary.compile(PHRASES, false, '_').write(out);
+        FSTPhraseDictionary dictionary = FSTPhraseDictionary.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(PHRASES.size(), dictionary.size());
+        assertEquals(4, dictionary.getMaxPhraseLength());
+        WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+        tokenizer.setReader(new StringReader("the great city of new york city"));
+        assertEquals(Arrays.asList("the", "great", "city_of_new_york", "new_york_city"),
+                terms(new PhraseMatchingTokenFilter(tokenizer, dictionary, false)));
+    }
+
+    @Test
+    public void testFactory() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/autophrase/autophrase.json";
+        for (String name : new String[] { "autophrase", "autophrase_fst" }) {
+            TokenFilterFactory tokenFilter = tokenFilterFactory(resource, name);
+            // the compiled dictionary is reused by all streams
+            for (int i = 0; i < 2; i++) {
+                WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+                tokenizer.setReader(new StringReader("my income tax refund"));
+                assertEquals(Arrays.asList("my", "income_tax", "tax_refund"), terms(tokenFilter.create(tokenizer)));
+            }
+        }
+    }
+
+    private static List<String> terms(String input, boolean emitSingleTokens) throws IOException {
+        List<String> terms = null;
+        for (PhraseDictionary dictionary : Arrays.asList(PhraseTrie.compile(PHRASES, false, '_'),
+                FSTPhraseDictionary.compile(PHRASES, false, '_'))) {
+            WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+            tokenizer.setReader(new StringReader(input));
+            List<String> list = terms(new PhraseMatchingTokenFilter(tokenizer, dictionary, emitSingleTokens));
+            if (terms != null) {
+                assertEquals(terms, list);
+            }
+            terms = list;
+        }
+        return terms;
+    }
+
+    private static List<String> terms(TokenStream stream) throws IOException {
+        List<String> terms = new ArrayList<>();
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        stream.reset();
+        while (stream.incrementToken()) {
+            terms.add(termAtt.toString());
+        }
+        stream.end();
+        stream.close();
+        return terms;
+    }
+}
@@ -0,0 +1,37 @@
+package org.xbib.elasticsearch.index.analysis.baseform;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.elasticsearch.common.fsa.ConstantArcSizeFSA;
+import org.xbib.elasticsearch.common.fsa.Dictionary;
+import org.xbib.elasticsearch.common.fsa.FSA;
+import org.xbib.elasticsearch.common.fsa.FSABuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *
+ */
+public class ArcIndexTests extends Assert {
+
+    @Test
+    public void testArcs() throws IOException {
+        List<byte[]> lines = BaseformTestUtils.readSortedLines();
+        FSA fsa = FSABuilder.build(lines);
+        ConstantArcSizeFSA indexed = ((ConstantArcSizeFSA) FSABuilder.build(lines)).withArcIndex(4);
+        assertEquals(fsa.getRootNode(), indexed.getRootNode());
+        fsa.visitAllStates(node -> {
+            for (int label = 0; label < 256; label++) {
+                assertEquals(fsa.getArc(node, (byte) label), indexed.getArc(node, (byte) label));
+            }
+            return true;
+        });
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        BaseformTestUtils.assertSameLookups(BaseformTestUtils.load(new Dictionary()),
+                BaseformTestUtils.load(new Dictionary().setArcIndex(true)));
+    }
+}
@@ -0,0 +1,103 @@
+package org.xbib.elasticsearch.index.analysis.baseform;
+
+import org.xbib.elasticsearch.common.fsa.Dictionary;
+import org.xbib.elasticsearch.common.fsa.FSA;
+import org.xbib.elasticsearch.common.fsa.FSABuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Fixtures for the FSA tests.
+ */
+final class BaseformTestUtils {
+
+    /**
+     * Words looked up in the english lemma dictionary, including a word that is not in the dictionary.
+     */
+    static final List<String> WORDS =
+            Arrays.asList("went", "mice", "geese", "children", "running", "better", "unknownword");
+
+    private BaseformTestUtils() {
+    }
+
+    /**
+     * Read the lines of the english lemma dictionary, with the tab replaced by a <code>+</code> separator.
+     *
+     * @return the lines as UTF-8 bytes, in file order
+     * @throws IOException if the dictionary can not be read
+     */
+    static List<byte[]> readLines() throws IOException {
+        List<byte[]> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(BaseformTestUtils.class
+                .getResourceAsStream("/baseform/en-lemma-utf8.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line.replace('\t', '+').getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Read the lines of the english lemma dictionary in the order required by {@link FSABuilder}.
+     *
+     * @return the sorted lines
+     * @throws IOException if the dictionary can not be read
+     */
+    static List<byte[]> readSortedLines() throws IOException {
+        List<byte[]> lines = readLines();
+        lines.sort(FSABuilder.LEXICAL_ORDERING);
+        return lines;
+    }
+
+    /**
+     * Load the english lemma dictionary.
+     *
+     * @param dictionary the configured dictionary to load into
+     * @return the loaded dictionary
+     * @throws IOException if the dictionary can not be read
+     */
+    static Dictionary load(Dictionary dictionary) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(BaseformTestUtils.class
+                .getResourceAsStream("/baseform/en-lemma-utf8.txt"), StandardCharsets.UTF_8)) {
+            return dictionary.load(reader);
+        }
+    }
+
+    /**
+     * Check that two dictionaries give the same lemmas for the {@link #WORDS}.
+     *
+     * @param expected the reference dictionary
+     * @param actual the dictionary under test
+     * @throws CharacterCodingException if a word can not be encoded
+     */
+    static void assertSameLookups(Dictionary expected, Dictionary actual) throws CharacterCodingException {
+        for (String word : WORDS) {
+            assertEquals(word, expected.lookup(word).toString(), actual.lookup(word).toString());
+        }
+    }
+
+    /**
+     * Decode the sequences of an automaton.
+     *
+     * @param fsa the automaton
+     * @return the sequences as UTF-8 strings, in automaton order
+     */
+    static List<String> toStrings(FSA fsa) {
+        List<String> list = new ArrayList<>();
+        for (ByteBuffer bb : fsa) {
+            list.add(new String(bb.array(), bb.position(), bb.remaining(), StandardCharsets.UTF_8));
+        }
+        return list;
+    }
+}
@@ -102,6 +102,37 @@ public class BaseformTokenFilterTests extends Assert {
         assertSimpleTSOutput(tokenFilter.create(tokenizer), expected);
     }
 
+    @Test
+    public void testEnglish() throws IOException {
+
+        String source = "The geese went running with the children";
+
+        String[] expected = {
+                "The",
+                "The",
+                "geese",
+                "goose",
+                "went",
+                "go",
+                "running",
+                "run",
+                "with",
+                "with",
+                "the",
+                "the",
+                "children",
+                "child"
+        };
+        String resource = "org/xbib/elasticsearch/index/analysis/baseform/baseform_en.json";
+        for (String name : new String[] { "baseform_en", "baseform_en_compact", "baseform_en_arc_index",
+                "baseform_en_perfect_hash" }) {
+            TokenFilterFactory tokenFilter = tokenFilterFactory(resource, name);
+            Tokenizer tokenizer = tokenizerFactory("standard").create();
+            tokenizer.setReader(new StringReader(source));
+            assertSimpleTSOutput(tokenFilter.create(tokenizer), expected);
+        }
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -0,0 +1,65 @@
+package org.xbib.elasticsearch.index.analysis.baseform;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.elasticsearch.common.fsa.CFSA2;
+import org.xbib.elasticsearch.common.fsa.CFSA2Serializer;
+import org.xbib.elasticsearch.common.fsa.Dictionary;
+import org.xbib.elasticsearch.common.fsa.FSA;
+import org.xbib.elasticsearch.common.fsa.FSABuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *
+ */
+public class CFSA2Tests extends Assert {
+
+    @Test
+    public void testSequences() throws IOException {
+        List<byte[]> lines = BaseformTestUtils.readSortedLines();
+        FSA fsa = FSABuilder.build(lines);
+        CFSA2 cfsa2 = new CFSA2Serializer().serialize(fsa);
+        assertEquals(lines.size(), assertSameSequences(fsa, cfsa2));
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        List<byte[]> lines = BaseformTestUtils.readSortedLines();
+        CFSA2 cfsa2 = new CFSA2Serializer().withNumbers().serialize(FSABuilder.build(lines));
+        assertEquals(lines.size(), cfsa2.getRightLanguageCount(cfsa2.getRootNode()));
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        FSA fsa = FSABuilder.build(BaseformTestUtils.readSortedLines());
+        CFSA2 cfsa2 = new CFSA2Serializer().serialize(fsa);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cfsa2.write(out);
+        CFSA2 read = CFSA2.read(new ByteArrayInputStream(out.toByteArray()));
+        assertSameSequences(fsa, read);
+    }
+
+    @Test
+    public void testEmpty() {
+        CFSA2 cfsa2 = new CFSA2Serializer().serialize(FSABuilder.build(new byte[0][]));
+        assertEquals(0, cfsa2.getRootNode());
+        assertFalse(cfsa2.iterator().hasNext());
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        Dictionary compact = BaseformTestUtils.load(new Dictionary().setCompact(true));
+        BaseformTestUtils.assertSameLookups(BaseformTestUtils.load(new Dictionary()), compact);
+        assertEquals("go", compact.lookup("went").toString());
+    }
+
+    private static int assertSameSequences(FSA expected, FSA actual) {
+        List<String> actualSequences = BaseformTestUtils.toStrings(actual);
+        assertEquals(BaseformTestUtils.toStrings(expected), actualSequences);
+        return actualSequences.size();
+    }
+}
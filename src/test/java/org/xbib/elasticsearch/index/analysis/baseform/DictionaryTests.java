@@ -3,11 +3,13 @@ package org.xbib.elasticsearch.index.analysis.baseform;
 import org.junit.Assert;
 import org.junit.Test;
 import org.xbib.elasticsearch.common.fsa.Dictionary;
+import org.xbib.elasticsearch.common.fsa.DictionaryLookup;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 
 public class DictionaryTests extends Assert {
 
@@ -29,6 +31,59 @@ public class DictionaryTests extends Assert {
         br.close();
     }
 
+    @Test
+    public void verifyLookup() throws IOException {
+        Dictionary dictionary = new Dictionary();
+        InputStreamReader reader = new InputStreamReader(getClass().getResource("/baseform/en-lemma-utf8.txt").openStream(), "UTF-8");
+        dictionary.load(reader);
+        reader.close();
+        DictionaryLookup lookup = new DictionaryLookup(dictionary);
+        char[] buffer = new char[1];
+        BufferedReader br = new BufferedReader(new InputStreamReader(getClass().getResource("/baseform/en-lemma-utf8.txt").openStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = br.readLine()) != null) {
+            for (String word : line.split("\t")) {
+                String expected = dictionary.lookup(word).toString();
+                char[] chars = word.toCharArray();
+                assertEquals(expected.length() > 0, lookup.lookup(chars, 0, chars.length) > 0);
+                if (buffer.length < lookup.getMaxLength()) {
+                    buffer = new char[lookup.getMaxLength()];
+                }
+                assertEquals(expected, new String(buffer, 0, lookup.decode(buffer)));
+            }
+        }
+        br.close();
+    }
+
+    @Test
+    public void verifyPerfectHash() throws IOException {
+        Dictionary dictionary = new Dictionary();
+        InputStreamReader reader = new InputStreamReader(getClass().getResource("/baseform/en-lemma-utf8.txt").openStream(), "UTF-8");
+        dictionary.load(reader);
+        reader.close();
+        Dictionary perfectHashDictionary = new Dictionary().setPerfectHash(true);
+        reader = new InputStreamReader(getClass().getResource("/baseform/en-lemma-utf8.txt").openStream(), "UTF-8");
+        perfectHashDictionary.load(reader);
+        reader.close();
+        DictionaryLookup lookup = new DictionaryLookup(perfectHashDictionary);
+        char[] buffer = new char[1];
+        BufferedReader br = new BufferedReader(new InputStreamReader(getClass().getResource("/baseform/en-lemma-utf8.txt").openStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = br.readLine()) != null) {
+            for (String word : line.split("\t")) {
+                String expected = dictionary.lookup(word).toString();
+                assertEquals(expected, perfectHashDictionary.lookup(word).toString());
+                char[] chars = word.toCharArray();
+                lookup.lookup(chars, 0, chars.length);
+                if (buffer.length < lookup.getMaxLength()) {
+                    buffer = new char[lookup.getMaxLength()];
+                }
+                assertEquals(expected, new String(buffer, 0, lookup.decode(buffer)));
+            }
+        }
+        br.close();
+    }
+
     private boolean check(String line, Dictionary dictionary) throws CharacterCodingException {
         int pos = line.indexOf("\t");
         String word = pos > 0 ? line.substring(0, pos) : line;
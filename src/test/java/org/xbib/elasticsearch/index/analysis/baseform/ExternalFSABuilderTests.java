@@ -0,0 +1,65 @@
+package org.xbib.elasticsearch.index.analysis.baseform;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xbib.elasticsearch.common.fsa.Dictionary;
+import org.xbib.elasticsearch.common.fsa.DictionaryCompiler;
+import org.xbib.elasticsearch.common.fsa.ExternalFSABuilder;
+import org.xbib.elasticsearch.common.fsa.FSA;
+import org.xbib.elasticsearch.common.fsa.FSABuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ *
+ */
+public class ExternalFSABuilderTests extends Assert {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testExternalSort() throws IOException {
+        List<byte[]> lines = BaseformTestUtils.readLines();
+        Path tempDir = temporaryFolder.newFolder().toPath();
+        FSA fsa;
+        try (ExternalFSABuilder builder = new ExternalFSABuilder(tempDir, 64 * 1024)) {
+            // add twice, in reverse order, to check merging and duplicate removal
+            for (int i = lines.size() - 1; i >= 0; i--) {
+                builder.add(lines.get(i), 0, lines.get(i).length);
+            }
+            for (byte[] b : lines) {
+                builder.add(b, 0, b.length);
+            }
+            fsa = builder.complete();
+        }
+        lines.sort(FSABuilder.LEXICAL_ORDERING);
+        assertEquals(BaseformTestUtils.toStrings(FSABuilder.build(lines)), BaseformTestUtils.toStrings(fsa));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0L, files.count());
+        }
+    }
+
+    @Test
+    public void testCompiler() throws IOException {
+        Path input = temporaryFolder.newFile("en-lemma-utf8.txt").toPath();
+        try (InputStream in = getClass().getResourceAsStream("/baseform/en-lemma-utf8.txt")) {
+            Files.copy(in, input, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path output = temporaryFolder.getRoot().toPath().resolve("en-lemma.fsa");
+        new DictionaryCompiler(temporaryFolder.newFolder().toPath(), 64 * 1024).compile(input, output);
+        Dictionary compiled;
+        try (InputStream in = Files.newInputStream(output)) {
+            compiled = new Dictionary().loadFSA(in);
+        }
+        BaseformTestUtils.assertSameLookups(BaseformTestUtils.load(new Dictionary()), compiled);
+    }
+}
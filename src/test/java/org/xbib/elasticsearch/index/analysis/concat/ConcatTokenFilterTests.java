@@ -26,6 +26,27 @@ public class ConcatTokenFilterTests extends Assert {
         assertSimpleTSOutput(analyzer.tokenStream("test-field", source), expected);
     }
 
+    @Test
+    public void testStreamingConcat() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/concat/concat_analysis.json";
+        Analyzer analyzer = MapperTestUtils.analyzer(resource, "streaming_concat");
+        assertSimpleTSOutput(analyzer.tokenStream("test-field", "Das ist ein Wort"),
+                new String[] { "Das ist ein Wort" });
+        assertSimpleTSOutput(analyzer.tokenStream("test-field", "Das ist ein Schlüsselwort, ein Bindestrichwort"),
+                new String[] { "Das ist ein Schlüsse" });
+        assertSimpleTSOutput(analyzer.tokenStream("test-field", ""), new String[0]);
+    }
+
+    @Test
+    public void testPair() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/concat/concat_analysis.json";
+        Analyzer analyzer = MapperTestUtils.analyzer(resource, "pair");
+        assertSimpleTSOutput(analyzer.tokenStream("test-field", "From New York to San Francisco"),
+                new String[] { "From", "New York", "to", "San Francisco" });
+        assertSimpleTSOutput(analyzer.tokenStream("test-field", "New Orleans and San New York"),
+                new String[] { "New", "Orleans", "and", "San", "New York" });
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
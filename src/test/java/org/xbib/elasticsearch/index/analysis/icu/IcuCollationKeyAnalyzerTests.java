@@ -2,9 +2,12 @@ package org.xbib.elasticsearch.index.analysis.icu;
 
 import com.ibm.icu.text.Collator;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
 import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Locale;
 import java.util.Random;
 
@@ -50,4 +53,46 @@ public class IcuCollationKeyAnalyzerTests extends CollationTestBase {
             assertThreadSafe(new Random(), new IcuCollationKeyAnalyzer(collator));
         }
     }
+
+    @Test
+    public void testCachedKeys() throws Exception {
+        Collator collator = Collator.getInstance(Locale.GERMAN);
+        Analyzer cached = new IcuCollationKeyAnalyzer(collator, 2);
+        String[] values = { "Göbel", "Goethe", "Göbel", "Götz", "Goethe", "Göbel" };
+        for (String value : values) {
+            assertEquals(new BytesRef(collator.getCollationKey(value).toByteArray()), key(analyzer, value));
+            assertEquals(key(analyzer, value), key(cached, value));
+        }
+    }
+
+    @Test
+    public void testTrimmedKeys() throws Exception {
+        Collator collator = Collator.getInstance(Locale.GERMAN);
+        Collator primary = Collator.getInstance(Locale.GERMAN);
+        primary.setStrength(Collator.PRIMARY);
+        Analyzer full = new IcuCollationKeyAnalyzer(collator);
+        Analyzer primaryLevel = new IcuCollationKeyAnalyzer(collator, 0, 1, 0);
+        Analyzer prefix = new IcuCollationKeyAnalyzer(collator, 0, 0, 4);
+        String[] values = { "Göbel", "göbel", "Goethe", "Götz", "Gotha" };
+        for (String value : values) {
+            byte[] primaryKey = primary.getCollationKey(value).toByteArray();
+            // the primary level, without the terminating zero byte
+            assertEquals(new BytesRef(primaryKey, 0, primaryKey.length - 1), key(primaryLevel, value));
+            BytesRef fullKey = key(full, value);
+            assertEquals(new BytesRef(fullKey.bytes, 0, 4), key(prefix, value));
+        }
+        assertEquals(key(primaryLevel, "Göbel"), key(primaryLevel, "gobel"));
+        assertTrue(key(primaryLevel, "Göbel").compareTo(key(primaryLevel, "Goethe")) < 0);
+    }
+
+    private static BytesRef key(Analyzer analyzer, String value) throws IOException {
+        try (TokenStream stream = analyzer.tokenStream("field", value)) {
+            TermToBytesRefAttribute termAtt = stream.addAttribute(TermToBytesRefAttribute.class);
+            stream.reset();
+            assertTrue(stream.incrementToken());
+            BytesRef bytesRef = BytesRef.deepCopyOf(termAtt.getBytesRef());
+            stream.end();
+            return bytesRef;
+        }
+    }
 }
@@ -8,6 +8,8 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.xbib.elasticsearch.MapperTestUtils.analyzer;
@@ -62,6 +64,32 @@ public class IcuFoldingFilterTests {
         assertSimpleTSOutput(ts, expected);
     }
 
+    @Test
+    public void testCasefoldFolding() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_folding.json";
+        Analyzer analyzer = analyzer(resource, "my_icu_casefold_analyzer");
+        Analyzer chained = analyzer(resource, "my_icu_chained_analyzer");
+        String[] sources = { "Jörg Prante", "ΜΆΪΟΣ", "ﴳﴺﰧ", "re\u0301sume\u0301", "ELİF", "a\u00A8b", "x\u02B0y",
+                "\u00B4\u0301", "already folded" };
+        for (String source : sources) {
+            String expected = terms(chained.tokenStream("test", source))[0];
+            assertSimpleTSOutput(analyzer.tokenStream("test", source), new String[] { expected });
+        }
+        assertSimpleTSOutput(analyzer.tokenStream("test", "x\u02B0y"), new String[] { "xhy" });
+    }
+
+    private String[] terms(TokenStream stream) throws IOException {
+        List<String> list = new ArrayList<>();
+        stream.reset();
+        CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
+        while (stream.incrementToken()) {
+            list.add(termAttr.toString());
+        }
+        stream.end();
+        stream.close();
+        return list.toArray(new String[list.size()]);
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -1,6 +1,8 @@
 package org.xbib.elasticsearch.index.analysis.icu;
 
+import com.ibm.icu.text.Normalizer2;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.junit.Test;
@@ -8,6 +10,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 import static org.xbib.elasticsearch.MapperTestUtils.analyzer;
@@ -62,6 +65,34 @@ public class IcuNormalizeCharTests {
         assertSimpleTSOutput(ts, expected);
     }
 
+    @Test
+    public void testLongInput() throws IOException {
+        Normalizer2 normalizer = Normalizer2.getNFKCCasefoldInstance();
+        String[] parts = { "Jörg ", "re\u0301sume\u0301 ", "ΜΆΪΟΣ ", "ﴳﴺﰧ ", "𐐖", "\u0301\u0301", "x", "ǅ", "\uFB01 " };
+        Random random = new Random(42L);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append(parts[random.nextInt(parts.length)]);
+        }
+        // a run longer than the buffer without an inert character
+        for (int i = 0; i < 3000; i++) {
+            sb.append("e\u0301");
+        }
+        String source = sb.toString();
+        String expected = normalizer.normalize(source);
+        for (int size : new int[] { 1, 7, 1024 }) {
+            CharFilter charFilter = new IcuNormalizerCharFilter(new StringReader(source), normalizer);
+            StringBuilder result = new StringBuilder();
+            char[] buf = new char[size];
+            int len;
+            while ((len = charFilter.read(buf, 0, buf.length)) != -1) {
+                result.append(buf, 0, len);
+            }
+            assertEquals(expected, result.toString());
+            assertEquals(source.length(), charFilter.correctOffset(result.length()));
+        }
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -68,6 +68,29 @@ public class IcuNumberFormatTests {
         assertSimpleTSOutput(tokenStream, expected);
     }
 
+    @Test
+    public void testNumberWords() throws IOException {
+
+        String source = "Fivethousand or fünftausend, One or onehundred, and 21";
+
+        String[] expected = {
+                "fivethousand",
+                "or",
+                "fünftausend",
+                "one",
+                "or",
+                "onehundred",
+                "and",
+                "twenty-one"
+        };
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_numberformat.json";
+        Tokenizer tokenizer = tokenizerFactory(resource, "my_tokenizer").create();
+        tokenizer.setReader(new StringReader(source));
+        TokenFilterFactory tokenFilter = tokenFilterFactory(resource, "spellout_en");
+        TokenStream tokenStream = tokenFilter.create(tokenizer);
+        assertSimpleTSOutput(tokenStream, expected);
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
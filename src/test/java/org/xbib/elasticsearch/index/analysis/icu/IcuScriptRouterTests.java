@@ -0,0 +1,133 @@
+package org.xbib.elasticsearch.index.analysis.icu;
+
+import com.ibm.icu.lang.UScript;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Test;
+import org.xbib.elasticsearch.index.analysis.icu.segmentation.IcuTokenizer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.xbib.elasticsearch.MapperTestUtils.analyzer;
+
+/**
+ *
+ */
+public class IcuScriptRouterTests {
+
+    @Test
+    public void testRoutes() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_script_router.json";
+        Analyzer analyzer = analyzer(resource, "my_icu_script_router_analyzer");
+        String source = "Российская Föderation ΜΆΪΟΣ";
+        TokenStream stream = analyzer.tokenStream("test", source);
+        String[] expected = { "rossijskaa", "foderation", "ΜΆΪΟΣ" };
+        int[] startOffsets = { 0, 11, 22 };
+        CharTermAttribute termAttr = stream.addAttribute(CharTermAttribute.class);
+        OffsetAttribute offsetAttr = stream.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute posIncAttr = stream.addAttribute(PositionIncrementAttribute.class);
+        stream.reset();
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(stream.incrementToken());
+            assertEquals(expected[i], termAttr.toString());
+            assertEquals(startOffsets[i], offsetAttr.startOffset());
+            assertEquals(1, posIncAttr.getPositionIncrement());
+        }
+        assertFalse(stream.incrementToken());
+        stream.end();
+        stream.close();
+        // the stream can be reused
+        assertSimpleTSOutput(analyzer.tokenStream("test", "Jörg Москва"), new String[] { "jorg", "moskva" });
+    }
+
+    @Test
+    public void testDefaultRoute() throws IOException {
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_script_router.json";
+        Analyzer analyzer = analyzer(resource, "my_icu_script_router_default_analyzer");
+        assertSimpleTSOutput(analyzer.tokenStream("test", "Jörg Москва"), new String[] { "jorg", "Moskva" });
+    }
+
+    @Test
+    public void testRemovedTokens() throws IOException {
+        Tokenizer tokenizer = new IcuTokenizer();
+        tokenizer.setReader(new StringReader("the Föderation of Москва the"));
+        TokenStream stream = new IcuScriptRouterTokenFilter(tokenizer,
+                Collections.singletonMap(UScript.LATIN, ts -> new StopFilter(ts, StopFilter.makeStopSet("the", "of"))),
+                null);
+        CharTermAttribute termAttr = stream.addAttribute(CharTermAttribute.class);
+        PositionIncrementAttribute posIncAttr = stream.addAttribute(PositionIncrementAttribute.class);
+        stream.reset();
+        assertTrue(stream.incrementToken());
+        assertEquals("Föderation", termAttr.toString());
+        assertEquals(2, posIncAttr.getPositionIncrement());
+        assertTrue(stream.incrementToken());
+        assertEquals("Москва", termAttr.toString());
+        assertEquals(2, posIncAttr.getPositionIncrement());
+        assertFalse(stream.incrementToken());
+        stream.end();
+        assertEquals(1, posIncAttr.getPositionIncrement());
+        stream.close();
+    }
+
+    @Test
+    public void testChainsAreEnded() throws IOException {
+        int[] calls = new int[2];
+        Tokenizer tokenizer = new IcuTokenizer();
+        tokenizer.setReader(new StringReader("one two three"));
+        TokenStream stream = new IcuScriptRouterTokenFilter(tokenizer,
+                Collections.singletonMap(UScript.LATIN, ts -> new TokenFilter(ts) {
+                    private boolean active;
+
+                    @Override
+                    public boolean incrementToken() throws IOException {
+                        assertTrue(active);
+                        return input.incrementToken();
+                    }
+
+                    @Override
+                    public void reset() throws IOException {
+                        assertFalse("reset before end", active);
+                        active = true;
+                        calls[0]++;
+                        super.reset();
+                    }
+
+                    @Override
+                    public void end() throws IOException {
+                        assertTrue("end before reset", active);
+                        active = false;
+                        calls[1]++;
+                        super.end();
+                    }
+                }), null);
+        assertSimpleTSOutput(stream, new String[] { "one", "two", "three" });
+        assertEquals(3, calls[0]);
+        assertEquals(3, calls[1]);
+    }
+
+    private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
+        stream.reset();
+        CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
+        assertTrue(termAttr != null);
+        int i = 0;
+        while (stream.incrementToken()) {
+            assertTrue(i < expected.length);
+            assertEquals(expected[i], termAttr.toString());
+            i++;
+        }
+        assertEquals(expected.length, i);
+        stream.end();
+        stream.close();
+    }
+}
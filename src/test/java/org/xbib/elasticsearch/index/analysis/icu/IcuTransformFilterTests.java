@@ -1,13 +1,21 @@
 package org.xbib.elasticsearch.index.analysis.icu;
 
+import com.ibm.icu.text.Transliterator;
+import com.ibm.icu.text.UnicodeSet;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 import static org.xbib.elasticsearch.MapperTestUtils.tokenFilterFactory;
@@ -113,6 +121,77 @@ public class IcuTransformFilterTests {
         assertSimpleTSOutput(tokenStream, expected);
     }
 
+    @Test
+    public void testTransformMixedScripts() throws IOException {
+        String source = "Российская Federation 2017";
+        String[] expected = new String[] { "Rossijskaâ", "Federation", "2017" };
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_transform.json";
+        Tokenizer tokenizer = tokenizerFactory(resource,"my_icu_tokenizer_cyr").create();
+        tokenizer.setReader(new StringReader(source));
+        TokenFilterFactory tokenFilter = tokenFilterFactory(resource, "my_icu_transformer_cyr");
+        TokenStream tokenStream = tokenFilter.create(tokenizer);
+        assertSimpleTSOutput(tokenStream, expected);
+    }
+
+    @Test
+    public void testTransformAnyLatinFiltered() throws IOException {
+        String source = "Российская 中国 Ελλάδα";
+        Transliterator template = Transliterator.getInstance("Any-Latin");
+        template.setFilter(new UnicodeSet("[а-я]").freeze());
+        String[] expected = new String[] {
+                template.transliterate("Российская"), template.transliterate("中国"), template.transliterate("Ελλάδα")
+        };
+        assertEquals("Рossijskaâ", expected[0]);
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_transform.json";
+        Tokenizer tokenizer = tokenizerFactory(resource,"my_icu_tokenizer_cyr").create();
+        tokenizer.setReader(new StringReader(source));
+        TokenFilterFactory tokenFilter = tokenFilterFactory(resource, "my_icu_transformer_any_latin_filtered");
+        TokenStream tokenStream = tokenFilter.create(tokenizer);
+        assertSimpleTSOutput(tokenStream, expected);
+    }
+
+    @Test
+    public void testTransliteratorPerThread() throws Exception {
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_transform.json";
+        IcuTransformTokenFilterFactory tokenFilter = (IcuTransformTokenFilterFactory)
+                tokenFilterFactory(resource, "my_icu_transformer_any_latin_filtered");
+        Transliterator transliterator = tokenFilter.transliterator();
+        assertSame(transliterator, tokenFilter.transliterator());
+        Transliterator[] other = new Transliterator[1];
+        Thread thread = new Thread(() -> other[0] = tokenFilter.transliterator());
+        thread.start();
+        thread.join();
+        assertNotSame(transliterator, other[0]);
+        assertEquals("Any-Latin", other[0].getID());
+        assertEquals("Рossijskaâ 中国", other[0].transliterate("Российская 中国"));
+    }
+
+    @Test
+    public void testTransformConcurrently() throws Exception {
+        String resource = "org/xbib/elasticsearch/index/analysis/icu/icu_transform.json";
+        TokenizerFactory tokenizerFactory = tokenizerFactory(resource, "my_icu_tokenizer_cyr");
+        TokenFilterFactory tokenFilter = tokenFilterFactory(resource, "my_icu_transformer_cyr");
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        Tokenizer tokenizer = tokenizerFactory.create();
+                        tokenizer.setReader(new StringReader("Российская Федерация"));
+                        assertSimpleTSOutput(tokenFilter.create(tokenizer), new String[]{"Rossijskaâ", "Federaciâ"});
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -3,6 +3,10 @@ package org.xbib.elasticsearch.index.analysis.icu.segmentation;
 import com.ibm.icu.text.Normalizer2;
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.cjk.CJKBigramFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.util.AttributeFactory;
 import org.apache.lucene.util.IOUtils;
 import org.junit.AfterClass;
@@ -12,6 +16,8 @@ import org.xbib.elasticsearch.index.analysis.BaseTokenStreamTest;
 import org.xbib.elasticsearch.index.analysis.icu.IcuNormalizerFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -20,6 +26,7 @@ public class CJKBigramFilterTests extends BaseTokenStreamTest {
 
     private static Analyzer analyzer;
     private static Analyzer analyzer2;
+    private static Analyzer analyzer3;
 
     @BeforeClass
     public static void setUp() throws Exception {
@@ -43,11 +50,18 @@ public class CJKBigramFilterTests extends BaseTokenStreamTest {
                 return new TokenStreamComponents(source, new StopFilter(result, CharArraySet.EMPTY_SET));
             }
         };
+        analyzer3 = new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                return new TokenStreamComponents(new IcuTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY,
+                        new DefaultIcuTokenizerConfig(false, true, true)));
+            }
+        };
     }
 
     @AfterClass
     public static void tearDown() throws Exception {
-        IOUtils.close(analyzer, analyzer2);
+        IOUtils.close(analyzer, analyzer2, analyzer3);
     }
 
     @Test
@@ -211,4 +225,49 @@ public class CJKBigramFilterTests extends BaseTokenStreamTest {
                 new String[] { "<DOUBLE>", "<DOUBLE>" },
                 new int[] { 1, 1 });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBigramTokenizer() throws IOException {
+        String[] inputs = { "一二三四五六七八九十", "一 二三四 五六七八九 十", "abc defgh ijklmn opqrstu vwxy z",
+                "あい", "あい   ", "あいtest", "testあい    ", "あいうえおabcかきくけこ", "あいうえおabんcかきくけ こ",
+                "一 روبرت موير", "𩬅艱鍟䇹愯瀛", "一", "日本語の、テスト。カタカナ 1２3漢字abc" };
+        for (String input : inputs) {
+            assertEquals(input, tokens(analyzer, input), tokens(analyzer3, input));
+        }
+    }
+
+    @Test
+    public void testBigramTokenizerAcrossBuffers() throws IOException {
+        StringBuilder han = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            han.append((char) ('一' + i % 1000));
+        }
+        StringBuilder latin = new StringBuilder();
+        for (int i = 0; i < 4095; i++) {
+            latin.append('a');
+        }
+        String[] inputs = { han.toString(), latin + "一 二", latin + "一二 三", latin + "一あ", latin + "一",
+                han.substring(0, 4095) + "あいう", han.substring(0, 4094) + "𩬅艱鍟" };
+        for (String input : inputs) {
+            assertEquals(tokens(analyzer, input), tokens(analyzer3, input));
+        }
+        assertEquals(9999, tokens(analyzer3, han.toString()).size());
+    }
+
+    private static List<String> tokens(Analyzer analyzer, String input) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream("dummy", input)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            TypeAttribute typeAtt = ts.addAttribute(TypeAttribute.class);
+            PositionIncrementAttribute posIncAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(termAtt + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset() + "/" +
+                        typeAtt.type() + "/" + posIncAtt.getPositionIncrement());
+            }
+            ts.end();
+        }
+        return tokens;
+    }
+}
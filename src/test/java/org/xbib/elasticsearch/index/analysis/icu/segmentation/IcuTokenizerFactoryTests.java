@@ -46,6 +46,21 @@ public class IcuTokenizerFactoryTests extends BaseTokenStreamTest {
                         "This", "is", "a", "test", "ກວ່າ", "ດອກ"});
     }
 
+    @Test
+    public void testCJKBigrams() throws Exception {
+        Reader reader = new StringReader("日本語のテスト This is a test 漢字");
+        Settings settings = Settings.builder()
+                .put("cjk_bigrams", true)
+                .build();
+        IcuTokenizerFactory factory = new TestIcuTokenizerFactory(settings);
+        Tokenizer stream = factory.create();
+        stream.setReader(reader);
+        assertTokenStreamContents(stream,
+                new String[] { "日本", "本語", "語の", "のテ", "テス", "スト", "This", "is", "a", "test", "漢字" },
+                new String[] { "<DOUBLE>", "<DOUBLE>", "<DOUBLE>", "<DOUBLE>", "<DOUBLE>", "<DOUBLE>",
+                        "<ALPHANUM>", "<ALPHANUM>", "<ALPHANUM>", "<ALPHANUM>", "<DOUBLE>" });
+    }
+
     @Test
     public void testTokenizeLatinOnWhitespaceOnly() throws Exception {
         Reader reader = new StringReader
@@ -77,6 +92,22 @@ public class IcuTokenizerFactoryTests extends BaseTokenStreamTest {
                         "This", "one", "not", "that", "one", "is", "the", "right", "one", "ish" });
     }
 
+    @Test
+    public void testTokenizeLatinDontBreakOnHyphensPrecompiled() throws Exception {
+        Reader reader = new StringReader
+                ("One-two punch.  Brang-, not brung-it.  This one--not that one--is the right one, -ish.");
+        Settings settings = Settings.builder()
+                .put("rulefiles", "Latn:icu/Latin-dont-break-on-hyphens.brk")
+                .build();
+        IcuTokenizerFactory factory = new TestIcuTokenizerFactory(settings);
+        Tokenizer stream = factory.create();
+        stream.setReader(reader);
+        assertTokenStreamContents(stream,
+                new String[] { "One-two", "punch",
+                        "Brang", "not", "brung-it",
+                        "This", "one", "not", "that", "one", "is", "the", "right", "one", "ish" });
+    }
+
     @Test
     public void testKeywordTokenizeCyrillicAndThai() throws Exception {
         Reader reader = new StringReader
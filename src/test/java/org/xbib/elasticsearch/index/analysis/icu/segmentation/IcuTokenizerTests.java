@@ -6,6 +6,7 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.util.AttributeFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -56,6 +57,32 @@ public class IcuTokenizerTests extends BaseTokenStreamTest {
         assertTokenStreamContents(tokenizer, new String[] { "testing", "1234" });
     }
 
+    @Test
+    public void testGrowingBuffer() throws IOException {
+        char[] term = new char[10000];
+        Arrays.fill(term, 'a');
+        String longTerm = new String(term);
+        StringBuilder sb = new StringBuilder();
+        char[] whitespace = new char[4000];
+        Arrays.fill(whitespace, ' ');
+        sb.append(whitespace).append("testing ").append(longTerm).append(" 1234 ").append(longTerm);
+        IcuTokenizer tokenizer = new IcuTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY,
+                new DefaultIcuTokenizerConfig(false, true), 16384);
+        tokenizer.setReader(new StringReader(sb.toString()));
+        assertTokenStreamContents(tokenizer, new String[] { "testing", longTerm, "1234", longTerm },
+                new int[] { 4000, 4008, 14009, 14014 }, new int[] { 4007, 14008, 14013, 24014 }, 24014);
+        // the buffer shrinks when the tokenizer is reused
+        tokenizer.setReader(new StringReader("testing 1234"));
+        assertTokenStreamContents(tokenizer, new String[] { "testing", "1234" });
+        tokenizer.setReader(new StringReader(longTerm));
+        assertTokenStreamContents(tokenizer, new String[] { longTerm });
+        // the buffer does not grow beyond the maximum size
+        tokenizer = new IcuTokenizer(AttributeFactory.DEFAULT_ATTRIBUTE_FACTORY,
+                new DefaultIcuTokenizerConfig(false, true), 6000);
+        tokenizer.setReader(new StringReader(longTerm));
+        assertTokenStreamContents(tokenizer, new String[] { longTerm.substring(0, 6000), longTerm.substring(6000) });
+    }
+
     @Test
     public void testHugeTerm2() throws IOException {
         StringBuilder sb = new StringBuilder();
@@ -279,6 +306,38 @@ public class IcuTokenizerTests extends BaseTokenStreamTest {
         }
     }
 
+    @Test
+    public void testPooledBreakIterators() throws Exception {
+        BreakIteratorWrapper wrapper = BreakIteratorPool.acquire(new DefaultIcuTokenizerConfig(false, true), UScript.LATIN);
+        BreakIteratorPool.release(new DefaultIcuTokenizerConfig(false, true), UScript.LATIN, wrapper);
+        assertSame(wrapper, BreakIteratorPool.acquire(new DefaultIcuTokenizerConfig(false, true), UScript.LATIN));
+        BreakIteratorPool.release(new DefaultIcuTokenizerConfig(false, true), UScript.LATIN, wrapper);
+        assertNotSame(wrapper, BreakIteratorPool.acquire(new DefaultIcuTokenizerConfig(true, true), UScript.LATIN));
+        // open tokenizers must not share break iterators
+        try (Tokenizer first = new IcuTokenizer(); Tokenizer second = new IcuTokenizer()) {
+            first.setReader(new StringReader("one two three"));
+            second.setReader(new StringReader("four five six"));
+            CharTermAttribute firstTerm = first.addAttribute(CharTermAttribute.class);
+            CharTermAttribute secondTerm = second.addAttribute(CharTermAttribute.class);
+            first.reset();
+            second.reset();
+            for (String[] expected : new String[][] { { "one", "four" }, { "two", "five" }, { "three", "six" } }) {
+                assertTrue(first.incrementToken());
+                assertTrue(second.incrementToken());
+                assertEquals(expected[0], firstTerm.toString());
+                assertEquals(expected[1], secondTerm.toString());
+            }
+            assertFalse(first.incrementToken());
+            assertFalse(second.incrementToken());
+            first.end();
+            second.end();
+        }
+        // a new tokenizer takes the break iterators given back by the closed ones
+        Tokenizer tokenizer = new IcuTokenizer();
+        tokenizer.setReader(new StringReader("seven"));
+        assertTokenStreamContents(tokenizer, new String[] { "seven" });
+    }
+
     @Test
     public void testICUConcurrency() throws Exception {
         int numThreads = 8;
@@ -0,0 +1,88 @@
+package org.xbib.elasticsearch.index.analysis.naturalsort;
+
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class NaturalSortKeyAttributeTests {
+
+    @Test
+    public void testSort() throws IOException {
+        Analyzer analyzer = new NaturalSortKeyAnalyzer(Collator.getInstance(ULocale.ENGLISH).freeze(), 256, 1, 2);
+        assertSorted(analyzer, "Bob: 2 points", "Bob: 3 points", "Bob: 10 points");
+        assertSorted(analyzer, "7 1 1 1", "7 2 1 2", "7 10 1 1", "7 20 2 1", "7 25 2 1", "7 201 2 1");
+        assertSorted(analyzer, "1.0.0", "1.10.0", "2.1.1", "2.10.1", "2.11.0", "10.1.1", "10.10.1");
+        analyzer.close();
+    }
+
+    @Test
+    public void testDigits() throws IOException {
+        Analyzer analyzer = new NaturalSortKeyAnalyzer(Collator.getInstance(ULocale.ENGLISH).freeze(), 256, 2, 3);
+        assertSorted(analyzer, "a 9", "a 10", "a 123456789", "a 1234567890");
+        assertSorted(analyzer, "x -9", "x -10", "x +100");
+        analyzer.close();
+    }
+
+    @Test
+    public void testReusedKeys() throws IOException {
+        Analyzer analyzer = new NaturalSortKeyAnalyzer(Collator.getInstance(ULocale.ENGLISH).freeze(), 256, 1, 2);
+        BytesRef first = key(analyzer, "Bob: 10 points");
+        key(analyzer, "a much longer text with 1 or 2 numbers");
+        assertEquals(first, key(analyzer, "Bob: 10 points"));
+        analyzer.close();
+    }
+
+    @Test
+    public void testClonedKeys() {
+        NaturalSortKeyAttributeImpl att =
+                new NaturalSortKeyAttributeImpl(Collator.getInstance(ULocale.ENGLISH).freeze(), 1, 2);
+        att.append("Bob: 10 points");
+        BytesRef first = BytesRef.deepCopyOf(att.getBytesRef());
+        NaturalSortKeyAttributeImpl clone = att.clone();
+        clone.setEmpty().append("a much longer text with 1 or 2 numbers");
+        BytesRef other = BytesRef.deepCopyOf(clone.getBytesRef());
+        assertEquals(first, att.getBytesRef());
+        assertNotSame(att.getBytesRef().bytes, clone.getBytesRef().bytes);
+        assertEquals(other, clone.getBytesRef());
+        assertEquals(att, clone);
+    }
+
+    private static void assertSorted(Analyzer analyzer, String... values) throws IOException {
+        Map<BytesRef, String> map = new TreeMap<>();
+        List<String> shuffled = Arrays.asList(values.clone());
+        Collections.reverse(shuffled);
+        for (String value : shuffled) {
+            map.put(key(analyzer, value), value);
+        }
+        assertEquals(Arrays.asList(values), Arrays.asList(map.values().toArray()));
+    }
+
+    private static BytesRef key(Analyzer analyzer, String value) throws IOException {
+        try (TokenStream ts = analyzer.tokenStream("test", value)) {
+            TermToBytesRefAttribute termAtt = ts.addAttribute(TermToBytesRefAttribute.class);
+            ts.reset();
+            assertTrue(ts.incrementToken());
+            BytesRef key = BytesRef.deepCopyOf(termAtt.getBytesRef());
+            ts.end();
+            return key;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.xbib.util.TreeMultiMap;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  *
@@ -43,6 +44,49 @@ public class SortFormTests extends BaseTokenStreamTest {
         assertAnalyzesTo(myanalyzer, "\u0098Der\u009c Titel des Buches", new String[]{"Titel des Buches"});
     }
 
+    @Test
+    public void testSinglePass() throws Exception {
+        Settings settings = Settings.builder()
+                .put("index.analysis.analyzer.myanalyzer.type", "custom")
+                .put("index.analysis.analyzer.myanalyzer.tokenizer", "keyword")
+                .put("index.analysis.analyzer.myanalyzer.filter", "sortform")
+                .build();
+        Analyzer myanalyzer = MapperTestUtils.analyzer(settings, "myanalyzer");
+        Pattern[] patterns = {
+                Pattern.compile("\\s*<<.*?>>\\s*"),
+                Pattern.compile("\\s*<.*?>\\s*"),
+                Pattern.compile("\\s*\u0098.*?\u009C\\s*"),
+                Pattern.compile("\\s*\u02BE.*?\u02BB\\s*"),
+                Pattern.compile("\\s*\u00AC.*?\u00AC\\s*")
+        };
+        String[] inputs = {
+                "<<Der>> Titel des Buches", "Titel <<des>> Buches", "Titel\t<des>  Buches <<zum>> Lesen",
+                "x <<a>> <b> y", "<<a>><<b>>", "\u0098The\u009C Book", "\u02BEal-\u02BBKitab", "¬Herr¬ Götz",
+                "<<unclosed", "a < b", "no markers at all", "  <<x>>  ", "\uD834\uDD1E <<\uD834\uDD1E>> x"
+        };
+        for (String input : inputs) {
+            String expected = input;
+            for (Pattern pattern : patterns) {
+                expected = pattern.matcher(expected).replaceAll("");
+            }
+            assertAnalyzesTo(myanalyzer, input, new String[] { expected });
+        }
+    }
+
+    @Test
+    public void testPatterns() throws Exception {
+        Settings settings = Settings.builder()
+                .put("index.analysis.filter.mysortform.type", "sortform")
+                .putArray("index.analysis.filter.mysortform.patterns", "\\[.*\\]", "The ")
+                .put("index.analysis.analyzer.myanalyzer.type", "custom")
+                .put("index.analysis.analyzer.myanalyzer.tokenizer", "keyword")
+                .put("index.analysis.analyzer.myanalyzer.filter", "mysortform")
+                .build();
+        Analyzer myanalyzer = MapperTestUtils.analyzer(settings, "myanalyzer");
+        assertAnalyzesTo(myanalyzer, "The Book [2nd edition] of <<Things>>",
+                new String[] { "Bookof <<Things>>" });
+    }
+
     @Test
     public void testFromJson() throws Exception {
         String resource = "org/xbib/elasticsearch/index/analysis/sortform/sortform.json";
@@ -94,6 +94,27 @@ public class SymbolnameTokenFilterTests extends Assert {
         assertSimpleTSOutput(tokenFilter.create(tokenizer), expected);
     }
 
+    @Test
+    public void testSupplementarySymbols() throws IOException {
+
+        String source = "H₂O \uD83D\uDC4D ∑";
+
+        String[] expected = {
+                "H₂O",
+                "H __SUBSCRIPTTWO__O",
+                "H",
+                "__SUBSCRIPTTWO__O",
+                "\uD83D\uDC4D",
+                "__THUMBSUPSIGN__",
+                "∑",
+                "__NARYSUMMATION__"
+        };
+        TokenFilterFactory tokenFilter = tokenFilterFactory("symbolname");
+        Tokenizer tokenizer = tokenizerFactory("whitespace").create();
+        tokenizer.setReader(new StringReader(source));
+        assertSimpleTSOutput(tokenFilter.create(tokenizer), expected);
+    }
+
     private void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -0,0 +1,109 @@
+package org.xbib.elasticsearch.index.mapper.icu;
+
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.elasticsearch.MapperTestUtils;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import static org.elasticsearch.common.io.Streams.copyToString;
+
+public class IcuCollationKeywordMappingTests extends Assert {
+
+    @Test
+    public void testDocValuesOnly() throws Exception {
+        String mapping = copyToStringFromClasspath("collation-mapping.json");
+        DocumentMapper docMapper = MapperTestUtils.newDocumentMapperParser("test").parse("someType",
+                new CompressedXContent(mapping));
+        Collator collator = Collator.getInstance(new ULocale("de"));
+        collator.setStrength(Collator.PRIMARY);
+        for (int i = 0; i < 2; i++) {
+            BytesReference json = XContentFactory.jsonBuilder().startObject().field("someField", "Göbel").endObject()
+                    .bytes();
+            ParseContext.Document doc = docMapper.parse("test", "someType", "1", json).rootDoc();
+            IndexableField[] fields = doc.getFields("someField");
+            assertEquals(1, fields.length);
+            assertEquals(DocValuesType.SORTED_SET, fields[0].fieldType().docValuesType());
+            assertEquals(IndexOptions.NONE, fields[0].fieldType().indexOptions());
+            assertEquals(new BytesRef(collator.getCollationKey("Göbel").toByteArray()), fields[0].binaryValue());
+            assertEquals(new BytesRef(collator.getCollationKey("gobel").toByteArray()), fields[0].binaryValue());
+            // re-parse it
+            String builtMapping = docMapper.mappingSource().string();
+            docMapper = MapperTestUtils.newDocumentMapperParser("test").parse("someType",
+                    new CompressedXContent(builtMapping));
+        }
+    }
+
+    @Test
+    public void testIndexed() throws Exception {
+        String mapping = copyToStringFromClasspath("collation-mapping.json");
+        DocumentMapper docMapper = MapperTestUtils.newDocumentMapperParser("test").parse("someType",
+                new CompressedXContent(mapping));
+        Collator collator = Collator.getInstance(new ULocale("de"));
+        BytesReference json = XContentFactory.jsonBuilder().startObject().field("indexedField", "Göbel").endObject()
+                .bytes();
+        ParseContext.Document doc = docMapper.parse("test", "someType", "1", json).rootDoc();
+        IndexableField[] fields = doc.getFields("indexedField");
+        assertEquals(2, fields.length);
+        BytesRef key = new BytesRef(collator.getCollationKey("Göbel").toByteArray());
+        assertEquals(IndexOptions.DOCS, fields[0].fieldType().indexOptions());
+        assertEquals(key, fields[0].binaryValue());
+        assertEquals(DocValuesType.SORTED_SET, fields[1].fieldType().docValuesType());
+        MappedFieldType fieldType = docMapper.mappers().getMapper("indexedField").fieldType();
+        assertEquals(key, ((TermQuery) fieldType.termQuery("Göbel", null)).getTerm().bytes());
+    }
+
+    @Test
+    public void testTrimmedKeys() throws Exception {
+        String mapping = copyToStringFromClasspath("collation-mapping.json");
+        DocumentMapper docMapper = MapperTestUtils.newDocumentMapperParser("test").parse("someType",
+                new CompressedXContent(mapping));
+        Collator collator = Collator.getInstance(new ULocale("de"));
+        collator.setStrength(Collator.PRIMARY);
+        BytesReference json = XContentFactory.jsonBuilder().startObject().field("trimmedField", "Göbel").endObject()
+                .bytes();
+        ParseContext.Document doc = docMapper.parse("test", "someType", "1", json).rootDoc();
+        IndexableField[] fields = doc.getFields("trimmedField");
+        assertEquals(1, fields.length);
+        assertEquals(new BytesRef(collator.getCollationKey("gobel").toByteArray(), 0, 3), fields[0].binaryValue());
+        String builtMapping = docMapper.mappingSource().string();
+        assertTrue(builtMapping, builtMapping.contains("\"maxKeyLength\":3"));
+    }
+
+    @Test
+    public void testKeysPerThread() throws Exception {
+        String mapping = copyToStringFromClasspath("collation-mapping.json");
+        DocumentMapper docMapper = MapperTestUtils.newDocumentMapperParser("test").parse("someType",
+                new CompressedXContent(mapping));
+        Collator collator = Collator.getInstance(new ULocale("de"));
+        BytesRef key = new BytesRef(collator.getCollationKey("Göbel").toByteArray());
+        MappedFieldType fieldType = docMapper.mappers().getMapper("indexedField").fieldType();
+        BytesRef first = ((TermQuery) fieldType.termQuery("Göbel", null)).getTerm().bytes();
+        // a longer value must not overwrite the key of the previous value
+        fieldType.termQuery("Zimmermann-Göbel", null);
+        assertEquals(key, first);
+        BytesRef[] other = new BytesRef[1];
+        Thread thread = new Thread(() -> other[0] = ((TermQuery) fieldType.termQuery("Göbel", null)).getTerm().bytes());
+        thread.start();
+        thread.join();
+        assertEquals(key, other[0]);
+    }
+
+    private String copyToStringFromClasspath(String path) throws IOException {
+        return copyToString(new InputStreamReader(getClass().getResource(path).openStream(), "UTF-8"));
+    }
+}
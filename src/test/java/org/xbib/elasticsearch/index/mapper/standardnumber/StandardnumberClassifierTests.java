@@ -0,0 +1,58 @@
+package org.xbib.elasticsearch.index.mapper.standardnumber;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+
+/**
+ *
+ */
+public class StandardnumberClassifierTests extends Assert {
+
+    @Test
+    public void testPlausibleTypes() {
+        assertPlausible("1-4493-5854-3", "isbn");
+        assertPlausible("978-1-4493-5854-9", "isbn", "ean", "gtin");
+        assertPlausible("ISSN 0317-8471", "issn");
+        assertPlausible("M-2306-7118-7", "ismn");
+        assertPlausible("979-0-2600-0043-8", "ismn", "gtin");
+        assertPlausible("036000291452", "upc");
+        assertPlausible("DE89370400440532013000", "iban");
+        assertPlausible("0000-0002-1825-0097", "orcid", "isni");
+        assertPlausible("10.1000/182", "doi");
+        assertPlausible("ark:/13030/tf5p30086k", "ark");
+        assertPlausible("T0345246801", "iswc");
+        assertPlausible("2361994-5", "ppn");
+        assertPlausible("0A9-2009-12B4A105-7", "istc");
+    }
+
+    @Test
+    public void testWords() {
+        for (String s : Arrays.asList("", "isbn", "Standard-Nummer", "Köln", "x", "--", "C++")) {
+            assertEquals(s, 0, StandardnumberClassifier.classify(s));
+        }
+        assertFalse(StandardnumberClassifier.isPlausible(StandardnumberClassifier.classify("2017"), "ean"));
+        assertFalse(StandardnumberClassifier.isPlausible(StandardnumberClassifier.classify("a1"), "upc"));
+    }
+
+    @Test
+    public void testLookup() {
+        Settings settings = Settings.builder().putArray("number_types", "isbn").build();
+        StandardnumberService service = new StandardnumberService(settings);
+        assertEquals(Arrays.asList("1-4493-5854-3", "1449358543", "978-1-4493-5854-9", "9781449358549"),
+                new LinkedList<>(service.lookup("1-4493-5854-3")));
+        Collection<CharSequence> variants = service.lookup("Standard-Nummer");
+        assertTrue(variants.isEmpty());
+    }
+
+    private static void assertPlausible(String s, String... types) {
+        int classified = StandardnumberClassifier.classify(s);
+        for (String type : types) {
+            assertTrue(s + " " + type, StandardnumberClassifier.isPlausible(classified, type));
+        }
+    }
+}
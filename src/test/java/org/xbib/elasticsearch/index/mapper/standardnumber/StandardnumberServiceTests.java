@@ -0,0 +1,59 @@
+package org.xbib.elasticsearch.index.mapper.standardnumber;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xbib.elasticsearch.common.standardnumber.StandardNumber;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ *
+ */
+public class StandardnumberServiceTests extends Assert {
+
+    @Test
+    public void testDefaultTypes() {
+        StandardnumberService service = new StandardnumberService(Settings.EMPTY);
+        assertTrue(service.getTypes().contains("issn"));
+        assertFalse(service.getTypes().contains("istc"));
+        assertEquals(Arrays.asList("ISSN 0317-8471", "ISSN 03178471"),
+                new LinkedList<>(service.lookup("0317-8471")));
+        assertEquals(Arrays.asList("IBAN DE89370400440532013000", "IBAN DE89370400440532013000"),
+                new LinkedList<>(service.lookup("DE89370400440532013000")));
+        assertTrue(service.lookup("ark:a|b").isEmpty());
+    }
+
+    @Test
+    public void testNumberTypesPerService() {
+        StandardnumberService isbn = new StandardnumberService(Settings.builder()
+                .putArray("number_types", "ISBN").build());
+        StandardnumberService issn = new StandardnumberService(Settings.builder()
+                .putArray("number_types", "issn").build());
+        assertEquals(Arrays.asList("isbn"), isbn.getTypes());
+        assertEquals(Arrays.asList("issn"), issn.getTypes());
+        assertTrue(isbn.lookup("0317-8471").isEmpty());
+        assertEquals(2, issn.lookup("0317-8471").size());
+        assertEquals(4, isbn.lookup("1-4493-5854-3").size());
+        assertEquals(2, issn.lookup("1-4493-5854-3").size());
+    }
+
+    @Test
+    public void testDetectedNumbersAreNotShared() {
+        StandardnumberService service = new StandardnumberService(Settings.builder()
+                .putArray("number_types", "issn").build());
+        List<StandardNumber> first = new LinkedList<>(service.detect("0317-8471"));
+        Collection<StandardNumber> second = service.detect("0378-5955");
+        assertEquals("03178471", first.get(0).normalizedValue());
+        assertEquals("03785955", second.iterator().next().normalizedValue());
+    }
+
+    @Test(expected = ElasticsearchException.class)
+    public void testUnknownType() {
+        new StandardnumberService(Settings.builder().putArray("number_types", "foo").build());
+    }
+}